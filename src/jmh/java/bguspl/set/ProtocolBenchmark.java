@@ -0,0 +1,62 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the binary encoding of the user interface events (UserInterfaceEncoder and UserInterfaceDecoder) on a
+ * full reshuffle burst: removing the tokens and the cards of every slot and placing new cards in them, as a frame.
+ * Run with the jmh profile, see the pom.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProtocolBenchmark {
+
+    /**
+     * The number of slots of the table.
+     */
+    @Param({"12", "81"})
+    public int slots;
+
+    private UserInterfaceEncoder encoder;
+    private UserInterfaceDecoder decoder;
+    private byte[] frame;
+
+    @Setup
+    public void setUp() {
+        encoder = new UserInterfaceEncoder();
+        decoder = new UserInterfaceDecoder(new UserInterfaceHeadless());
+        frame = encodeReshuffle();
+    }
+
+    @Benchmark
+    public byte[] encodeReshuffle() {
+        encoder.removeTokens();
+        for (int slot = 0; slot < slots; ++slot)
+            encoder.removeCard(slot);
+        for (int slot = 0; slot < slots; ++slot)
+            encoder.placeCard(80 - slot, slot);
+        return encoder.takeFrame();
+    }
+
+    @Benchmark
+    public long decodeReshuffle() {
+        decoder.decode(frame);
+        return decoder.events();
+    }
+}
@@ -0,0 +1,99 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks the card utilities (UtilImpl) for several feature sizes (so deck and set sizes) and numbers of cards
+ * searched. Run with the jmh profile, see the pom.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UtilBenchmark {
+
+    /**
+     * The number of random card groups to cycle through (a power of 2).
+     */
+    private static final int GROUPS = 1 << 10;
+
+    @Param({"3", "4", "5"})
+    public int featureSize;
+
+    /**
+     * The number of cards searched for sets (capped by the deck size).
+     */
+    @Param({"12", "24", "81"})
+    public int cards;
+
+    private UtilImpl util;
+    private int[][] groups; // random groups of featureSize distinct cards
+    private int[] table; // the first cards of a shuffled deck
+    private int[] result;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("LogLevel", "OFF");
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+
+        SplittableRandom random = new SplittableRandom(featureSize * 31L + cards);
+        int[] deck = new int[config.deckSize];
+        for (int i = 0; i < deck.length; ++i) {
+            int j = random.nextInt(i + 1);
+            deck[i] = deck[j];
+            deck[j] = i;
+        }
+        table = new int[Math.min(cards, deck.length)];
+        System.arraycopy(deck, 0, table, 0, table.length);
+
+        groups = new int[GROUPS][featureSize];
+        for (int[] group : groups)
+            for (int i = 0; i < featureSize; ++i)
+                group[i] = deck[random.nextInt(deck.length)];
+        result = new int[table.length * table.length * featureSize];
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(groups[next++ & (GROUPS - 1)]);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(groups[next++ & (GROUPS - 1)]);
+    }
+
+    @Benchmark
+    public int findAnySet() {
+        return util.findSets(table, table.length, 1, result);
+    }
+
+    @Benchmark
+    public int findAllSets() {
+        return util.findSets(table, table.length, Integer.MAX_VALUE, null);
+    }
+}
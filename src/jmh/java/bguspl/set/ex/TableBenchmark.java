@@ -0,0 +1,144 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks the table operations: the players' token toggles with 1, 4 and all the available threads contending,
+ * and the dealer replacing cards while players toggle tokens. Run with the jmh profile, see the pom.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TableBenchmark {
+
+    /**
+     * The number of players (more than 64, so the token bitmask of a slot spans several words).
+     */
+    private static final int PLAYERS = 128;
+
+    private Table table;
+    private int tableSize;
+    private final AtomicInteger ids = new AtomicInteger();
+
+    /**
+     * A player of a benchmark thread: its id and the next slot it presses.
+     */
+    @State(Scope.Thread)
+    public static class PlayerState {
+        int id;
+        int slot;
+
+        @Setup(Level.Trial)
+        public void setUp(TableBenchmark benchmark) {
+            id = benchmark.ids.getAndIncrement() % PLAYERS;
+            slot = id % benchmark.tableSize;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(PLAYERS));
+        properties.put("TableDelaySeconds", "0");
+        properties.put("LogLevel", "OFF");
+        Config config = new Config(logger, properties);
+        table = new Table(new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config)));
+        tableSize = config.tableSize;
+        for (int slot = 0; slot < tableSize; ++slot)
+            table.placeCard(slot, slot);
+    }
+
+    /**
+     * Places the player's token on its next slot, or removes it if it is there.
+     */
+    private boolean toggleToken(PlayerState player) {
+        int slot = player.slot;
+        player.slot = slot + 1 == tableSize ? 0 : slot + 1;
+        return table.placeToken(player.id, slot) || table.removeToken(player.id, slot);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean toggleToken_1(PlayerState player) {
+        return toggleToken(player);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean toggleToken_4(PlayerState player) {
+        return toggleToken(player);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean toggleToken_max(PlayerState player) {
+        return toggleToken(player);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean hasToken(PlayerState player) {
+        int slot = player.slot;
+        player.slot = slot + 1 == tableSize ? 0 : slot + 1;
+        return table.hasToken(player.id, slot);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int countSets() {
+        return table.countSets();
+    }
+
+    /**
+     * The dealer's part of the dealer group: replaces the card of a slot (so its tokens are removed).
+     */
+    @Benchmark
+    @Group("dealer")
+    @GroupThreads(1)
+    public int replaceCard(PlayerState dealer) {
+        int slot = dealer.slot;
+        dealer.slot = slot + 1 == tableSize ? 0 : slot + 1;
+        int card = table.cardAt(slot);
+        table.removeCard(slot);
+        table.placeCard(card, slot);
+        return card;
+    }
+
+    /**
+     * The players' part of the dealer group: toggle tokens while the dealer replaces cards.
+     */
+    @Benchmark
+    @Group("dealer")
+    @GroupThreads(3)
+    public boolean toggleTokenWithDealer(PlayerState player) {
+        return toggleToken(player);
+    }
+}
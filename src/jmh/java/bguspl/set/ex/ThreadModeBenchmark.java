@@ -0,0 +1,148 @@
+package bguspl.set.ex;
+
+import bguspl.set.VirtualThreads;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares platform and virtual threads for the player loops: the cost of a key press round trip between two threads
+ * (a context switch each way), and the memory taken by idle players waiting for key presses (reported as the
+ * heapBytesPerPlayer and residentBytesPerPlayer counters). Run with the jmh profile, see the pom. Virtual threads need
+ * Java 21 or later, before that run with -p mode=platform.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ThreadModeBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    /**
+     * The number of idle players started by idlePlayers.
+     */
+    @Param({"2000"})
+    public int players;
+
+    private boolean virtual;
+    private KeyPressQueue ping;
+    private KeyPressQueue pong;
+    private Thread echo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        virtual = mode.equals("virtual");
+        if (virtual && !VirtualThreads.supported())
+            throw new IllegalStateException("virtual threads are not supported by this JVM (" + System.getProperty("java.version") + ")");
+
+        ping = new KeyPressQueue(1);
+        pong = new KeyPressQueue(1);
+        echo = VirtualThreads.newThread(virtual, () -> {
+            try {
+                while (true) pong.put(ping.take());
+            } catch (InterruptedException ignored) {}
+        }, "echo");
+        echo.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        echo.interrupt();
+        echo.join();
+    }
+
+    /**
+     * Bounces a key press to the echo thread and back (two handoffs).
+     */
+    @Benchmark
+    public int roundTrip() throws InterruptedException {
+        ping.put(1);
+        return pong.take();
+    }
+
+    /**
+     * The memory taken by the idle players of an idlePlayers run (thread stacks are not on the heap, the resident set
+     * size includes them where the OS reports it, i.e. on Linux).
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+        public long heapBytesPerPlayer;
+        public long residentBytesPerPlayer;
+    }
+
+    /**
+     * Starts idle player loops (waiting for a key press, like a human player between presses), measures the memory
+     * they take and ends them.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void idlePlayers(Memory memory) throws InterruptedException {
+        KeyPressQueue[] queues = new KeyPressQueue[players];
+        Thread[] threads = new Thread[players];
+        CountDownLatch started = new CountDownLatch(players);
+
+        System.gc();
+        long heapBefore = usedHeap();
+        long rssBefore = residentSetSize();
+        for (int i = 0; i < players; ++i) {
+            KeyPressQueue queue = queues[i] = new KeyPressQueue(3);
+            threads[i] = VirtualThreads.newThread(virtual, () -> {
+                started.countDown();
+                try {
+                    queue.take();
+                } catch (InterruptedException ignored) {}
+            }, "player-" + i);
+            threads[i].start();
+        }
+        started.await();
+        Thread.sleep(100); // let every loop reach its wait
+        System.gc();
+        memory.heapBytesPerPlayer = (usedHeap() - heapBefore) / players;
+        memory.residentBytesPerPlayer = (residentSetSize() - rssBefore) / players;
+
+        for (int i = 0; i < players; ++i) queues[i].offer(0);
+        for (Thread thread : threads) thread.join();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return - the resident set size of the process in bytes (0 if unknown, i.e. not on Linux).
+     */
+    private static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status")))
+                if (line.startsWith("VmRSS:"))
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+        } catch (IOException | NumberFormatException ignored) {}
+        return 0;
+    }
+}
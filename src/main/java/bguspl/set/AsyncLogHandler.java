@@ -0,0 +1,221 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that hands the records over to a background writer thread, which publishes them to the target handler
+ * (e.g. the FileHandler of ./logs/). Game threads only copy the record into a slot of a bounded, lock-free ring buffer
+ * and never block: not on the target's lock, its formatter or its file. When the buffer is full, records are dropped
+ * (and counted) instead.
+ * Besides log records, the buffer takes structured events (a message template with up to two long arguments, see
+ * StructuredLogger), which are formatted only by the writer thread, so logging them allocates nothing.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * A slot of the ring buffer.
+     * The slot is free for the producer of ticket t iff sequence == t, and holds its event iff sequence == t + 1.
+     */
+    private static final class Slot {
+        volatile long sequence;
+        LogRecord record; // a published log record (null for a structured event)
+        Level level;
+        long millis;
+        String template;
+        int args;
+        long first;
+        long second;
+    }
+
+    /**
+     * The number of nanoseconds flush() waits between checks of the writer thread's progress.
+     */
+    private static final long FLUSH_NANOS = 1_000_000;
+
+    private final Handler target;
+
+    private final Slot[] slots;
+    private final int mask;
+
+    /**
+     * The number of slots claimed by producers (tickets handed out), and taken by the writer thread.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * The number of records dropped because the buffer was full (reported by the writer thread).
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * True while the writer thread is (about to be) parked on an empty buffer: a producer that publishes an event
+     * then unparks it. Otherwise the writer costs nothing while idle.
+     */
+    private volatile boolean sleeping;
+
+    /**
+     * @param target   - the handler to publish the records to (used by the writer thread only).
+     * @param capacity - the capacity of the buffer (rounded up to a power of 2).
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        this.target = target;
+        slots = new Slot[Integer.highestOneBit(Math.max(2, capacity) * 2 - 1)];
+        mask = slots.length - 1;
+        for (int i = 0; i < slots.length; ++i) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The formatter (and level) given to this handler apply to the records the target publishes.
+     */
+    @Override
+    public void setFormatter(Formatter formatter) {
+        super.setFormatter(formatter);
+        target.setFormatter(formatter);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) return;
+        Slot slot = claim();
+        if (slot == null) return;
+        slot.record = record;
+        release(slot);
+    }
+
+    /**
+     * Queues a structured event: a message template whose first args "{}" placeholders are replaced by the arguments
+     * (by the writer thread).
+     */
+    void publish(Level level, String template, int args, long first, long second) {
+        if (level.intValue() < getLevel().intValue()) return;
+        Slot slot = claim();
+        if (slot == null) return;
+        slot.level = level;
+        slot.millis = System.currentTimeMillis();
+        slot.template = template;
+        slot.args = args;
+        slot.first = first;
+        slot.second = second;
+        release(slot);
+    }
+
+    /**
+     * Claims the next free slot of the buffer.
+     *
+     * @return - the slot, or null if the buffer is full (or the handler is closed).
+     */
+    private Slot claim() {
+        while (!closed) {
+            long ticket = tail.get();
+            Slot slot = slots[(int) ticket & mask];
+            long sequence = slot.sequence;
+            if (sequence < ticket) break; // still holds the event of the previous round: full
+            if (sequence == ticket && tail.compareAndSet(ticket, ticket + 1)) return slot;
+        }
+        dropped.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Publishes the event written to a claimed slot to the writer thread.
+     */
+    private void release(Slot slot) {
+        slot.sequence = slot.sequence + 1;
+        if (sleeping) LockSupport.unpark(writer);
+    }
+
+    /**
+     * The writer thread's loop: takes the events in order and publishes them to the target.
+     */
+    private void write() {
+        StringBuilder message = new StringBuilder();
+        while (!closed || head != tail.get()) {
+            long h = head;
+            Slot slot = slots[(int) h & mask];
+            if (slot.sequence != h + 1) {
+                if (head == tail.get()) idle(slot, h);
+                continue; // empty, or the event is still being written
+            }
+
+            LogRecord record = slot.record;
+            if (record == null) {
+                record = new LogRecord(slot.level, format(message, slot.template, slot.args, slot.first, slot.second));
+                record.setMillis(slot.millis);
+            }
+            slot.record = null;
+            slot.template = null;
+            slot.sequence = h + slots.length;
+            head = h + 1;
+
+            target.publish(record);
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) target.publish(new LogRecord(Level.WARNING, lost + " log records dropped (log buffer full)"));
+        }
+    }
+
+    /**
+     * Parks the writer thread until a producer publishes the next event (or the handler is closed).
+     */
+    private void idle(Slot slot, long h) {
+        sleeping = true;
+        // a producer that publishes after this sees sleeping and unparks the writer, one that published before is
+        // seen here (both sides write one volatile and then read the other's)
+        if (slot.sequence != h + 1 && !closed) LockSupport.park(this);
+        sleeping = false;
+    }
+
+    /**
+     * Replaces the "{}" placeholders of a template with the arguments, in order.
+     */
+    static String format(StringBuilder message, String template, int args, long first, long second) {
+        message.setLength(0);
+        int from = 0;
+        for (int i = 0; i < args; ++i) {
+            int at = template.indexOf("{}", from);
+            if (at < 0) break;
+            message.append(template, from, at).append(i == 0 ? first : second);
+            from = at + 2;
+        }
+        return message.append(template, from, template.length()).toString();
+    }
+
+    /**
+     * Waits until the writer thread has published all the records queued so far, and flushes the target.
+     */
+    @Override
+    public void flush() {
+        long until = tail.get();
+        while (head < until && writer.isAlive())
+            LockSupport.parkNanos(this, FLUSH_NANOS);
+        target.flush();
+    }
+
+    /**
+     * Publishes the queued records, stops the writer thread and closes the target.
+     */
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ignored) {}
+        target.close();
+    }
+}
@@ -0,0 +1,165 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.Image;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * The images of the cards, decoded in the background: start() decodes them all on a pool of worker threads (one per
+ * processor) without delaying the window, and tells a listener about each card as it is decoded. peek() never waits
+ * for a card the workers did not get to yet (e.g. a card placed on the table early): it moves the card to the front of
+ * the workers' queue, so the event dispatch thread can show a placeholder until the listener hears of it. get()
+ * decodes such a card on the calling thread. A card may be decoded twice in a race, the first image stored wins.
+ */
+class CardImages {
+
+    /**
+     * The states of the background decoding of a card.
+     */
+    private static final int QUEUED = 0, DECODING = 1, DECODED = 2, FAILED = 3;
+
+    private final Logger logger;
+    private final Config config;
+    private final AtomicReferenceArray<Image> images;
+    private final AtomicIntegerArray states;
+
+    /**
+     * The pool decoding the images (null until started), and the number of images it did not decode yet.
+     */
+    private volatile ExecutorService workers;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * The cards asked for by peek(), which the workers decode first, and the next card of the preload in order.
+     */
+    private final Queue<Integer> requested = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * The listener of start() (set before the workers start).
+     */
+    private IntConsumer decoded;
+
+    CardImages(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        images = new AtomicReferenceArray<>(config.deckSize);
+        states = new AtomicIntegerArray(config.deckSize);
+    }
+
+    /**
+     * Starts decoding all the images in the background (the worker threads are daemons and end when done).
+     *
+     * @param decoded - called with every card whose image was decoded (on a worker thread).
+     */
+    void start(IntConsumer decoded) {
+        this.decoded = decoded;
+        pending.set(config.deckSize);
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), config.deckSize));
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "card-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; ++i)
+            workers.execute(this::preload);
+        workers.shutdown();
+    }
+
+    /**
+     * A worker's loop: decodes the requested cards first, then the rest in order, until every card was taken.
+     */
+    private void preload() {
+        while (true) {
+            Integer request = requested.poll();
+            int card = request != null ? request : next.getAndIncrement();
+            if (card >= config.deckSize) return;
+            if (!states.compareAndSet(card, QUEUED, DECODING)) continue; // taken by another worker
+            try {
+                if (images.get(card) == null) images.compareAndSet(card, null, decode(cardFilename(card)));
+                states.set(card, DECODED);
+                decoded.accept(card);
+            } catch (RuntimeException e) {
+                states.set(card, FAILED);
+                logger.severe("cannot preload the image of card " + card + ": " + e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Waits for the background decoding to finish.
+     *
+     * @return - true iff it finished before the timeout (or was never started).
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return workers == null || workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @return - the number of images the background decoding did not get to yet.
+     */
+    int pending() {
+        return pending.get();
+    }
+
+    /**
+     * @param card - the card.
+     * @return - the image of the card, or null if the background decoding did not decode it (yet, in which case it is
+     *           decoded next, or because it failed). It is decoded now if the background decoding was not started.
+     */
+    Image peek(int card) {
+        Image image = images.get(card);
+        if (image != null) return image;
+        if (workers == null) return get(card);
+        if (states.get(card) == QUEUED) requested.add(card);
+        return null;
+    }
+
+    /**
+     * @param card - the card.
+     * @return - the image of the card, decoded now if it was not decoded yet.
+     */
+    Image get(int card) {
+        Image image = images.get(card);
+        if (image != null) return image;
+        images.compareAndSet(card, null, decode(cardFilename(card)));
+        return images.get(card);
+    }
+
+    private String cardFilename(int card) {
+        assert config.featureSize < 10; // otherwise there will be naming conflicts
+        return "cards/" + UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+    }
+
+    /**
+     * Decodes an image resource (fully, on the calling thread).
+     */
+    static Image decode(String filename) {
+        URL imageResource = CardImages.class.getClassLoader().getResource(filename);
+        if (imageResource == null)
+            throw new RuntimeException(new FileNotFoundException(filename));
+        try {
+            Image image = ImageIO.read(imageResource);
+            if (image == null) throw new IOException("unknown image format: " + filename);
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
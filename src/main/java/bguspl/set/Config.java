@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +37,77 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * Whether to run a headless simulation: no user interface, no table delays, no end game pause and no per-event
+     * logging or hints (for computer players only games)
+     */
+    public final boolean simulation;
+
+    /**
+     * The number of games to play one after another in a simulation
+     */
+    public final int simulationGames;
+
+    /**
+     * The number of games to play in a tournament: headless games played concurrently on a shared thread pool, with
+     * the results summed up per player strategy (0 for no tournament)
+     */
+    public final int tournamentGames;
+
+    /**
+     * The maximum number of tournament games in progress at the same time
+     */
+    public final int tournamentParallelism;
+
+    /**
+     * Whether to run the player and AI loops (and in a tournament, the whole thread pool) on virtual threads instead
+     * of platform threads (only where the JVM supports virtual threads, i.e. Java 21 and later)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * The seed of the game's random choices (the dealer's shuffles and the computer players' strategies). A random
+     * seed is picked (and logged) if none is configured.
+     */
+    public final long seed;
+
+    /**
+     * The file to record the events of the game to, for a replay (empty for no recording, ignored in a tournament).
+     * In a simulation of several games, the file holds the last game.
+     */
+    public final String recordFile;
+
+    /**
+     * The file of a recorded game to replay instead of playing (empty for playing)
+     */
+    public final String replayFile;
+
+    /**
+     * The file to record the display to, as frames of encoded user interface events (empty for no recording)
+     */
+    public final String displayRecordFile;
+
+    /**
+     * The number of user interface events a spectator (e.g. the display recording) may fall behind before it skips
+     * events or is dropped
+     */
+    public final int spectatorBufferSize;
+
+    /**
+     * The port to serve the game on to remote clients (0 for no server, i.e. a local game)
+     */
+    public final int serverPort;
+
+    /**
+     * The address to serve the game on
+     */
+    public final String serverAddress;
+
+    /**
+     * The number of milliseconds between dumps of the metrics to the log (0 for no dumps)
+     */
+    public final long metricsDumpMillis;
+
     /**
      * The number of human players in the game.
      */
@@ -81,11 +153,38 @@ public class Config {
      */
     public final long tableDelayMillis;
 
+    /**
+     * Whether to apply the changes of the configuration file to the turn timeout and warning, the freezes and the table
+     * delay while the game runs (see ConfigReloader)
+     */
+    public final boolean reloadConfig;
+
     /**
      * The number of milliseconds to pause at the end of the game before closing
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The maximum number of key presses that can be queued for a player (defaults to the number of cards in a set)
+     */
+    public final int keyQueueSize;
+
+    /**
+     * The AI strategies of the computer players, one per computer player in order (repeated if there are more
+     * computer players than strategies): random, set-aware or human-like
+     */
+    private final String[] aiStrategies;
+
+    /**
+     * The average number of milliseconds a human-like computer player takes per key press
+     */
+    public final long humanLikeDelayMillis;
+
+    /**
+     * The probability that a key press of a human-like computer player is a mistake (a random slot)
+     */
+    public final double humanLikeMistakeRate;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +231,12 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximum number of times per second the screen is updated, or a server sends the changes to its clients (0 or
+     * less for no limit)
+     */
+    public final int maxFrameRate;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -181,16 +286,35 @@ public class Config {
     }
 
     public Config(Logger logger, Properties properties) {
+        this(logger, properties, null);
+    }
+
+    /**
+     * Parses a new version of the configuration file for the running game (see ConfigReloader), without the side effects
+     * of the startup configuration: it keeps the logger as it is and the seed of the game, and logs no warnings.
+     *
+     * @param properties - the new configuration file contents.
+     * @return - the new configuration snapshot.
+     */
+    public Config reloaded(Properties properties) {
+        return new Config(null, properties, this);
+    }
+
+    /**
+     * @param running - the configuration of the running game, for a reload (null at startup).
+     */
+    private Config(Logger logger, Properties properties, Config running) {
+        boolean startup = running == null;
 
         // logger settings
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
-        Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        if (startup) Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
         randomSpinMax = Long.parseLong(properties.getProperty("RandomSpinMax", "0"));
-        if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
+        if (startup && (randomSpinMax < randomSpinMin || randomSpinMin < 0))
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
 
         // cards settings
@@ -198,18 +322,58 @@ public class Config {
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
 
+        // simulation settings
+        simulation = Boolean.parseBoolean(properties.getProperty("Simulation", "False"))
+                || Integer.parseInt(properties.getProperty("TournamentGames", "0")) > 0;
+        simulationGames = Integer.parseInt(properties.getProperty("SimulationGames", "1"));
+        tournamentGames = Integer.parseInt(properties.getProperty("TournamentGames", "0"));
+        int parallelism = Integer.parseInt(properties.getProperty("TournamentParallelism", "0"));
+        tournamentParallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+
+        // threading settings
+        boolean virtual = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        if (startup && virtual && !VirtualThreads.supported())
+            logger.severe("warning: virtual threads are not supported by this JVM, using platform threads");
+        virtualThreads = virtual && VirtualThreads.supported();
+
+        // record and replay settings
+        long configuredSeed = Long.parseLong(properties.getProperty("Seed", "0"));
+        if (startup) {
+            seed = configuredSeed != 0 ? configuredSeed : new Random().nextLong();
+            logger.info("random seed: " + seed);
+        } else seed = running.seed;
+        recordFile = tournamentGames > 0 ? "" : properties.getProperty("RecordFile", "").trim();
+        replayFile = properties.getProperty("ReplayFile", "").trim();
+        displayRecordFile = properties.getProperty("DisplayRecordFile", "").trim();
+        spectatorBufferSize = Integer.parseInt(properties.getProperty("SpectatorBufferSize", "4096"));
+
+        // server settings
+        serverPort = Integer.parseInt(properties.getProperty("ServerPort", "0"));
+        serverAddress = properties.getProperty("ServerAddress", "localhost").trim();
+
+        // metrics settings
+        metricsDumpMillis = (long) (Double.parseDouble(properties.getProperty("MetricsDumpSeconds", "0")) * 1000.0);
+
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
 
-        hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        hints = !simulation && Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
-        tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
-        endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        tableDelayMillis = simulation ? 0 : (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        reloadConfig = !simulation && Boolean.parseBoolean(properties.getProperty("ReloadConfig", "False"));
+        endGamePauseMillies = simulation ? 0 : (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        keyQueueSize = Integer.parseInt(properties.getProperty("KeyQueueSize", Integer.toString(featureSize)));
+
+        // computer players settings
+        aiStrategies = properties.getProperty("AiStrategies", "random").split(",");
+        Arrays.setAll(aiStrategies, i -> aiStrategies[i].trim());
+        humanLikeDelayMillis = (long) (Double.parseDouble(properties.getProperty("HumanLikeDelaySeconds", "0.5")) * 1000.0);
+        humanLikeMistakeRate = Double.parseDouble(properties.getProperty("HumanLikeMistakeRate", "0.2"));
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +388,7 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        maxFrameRate = Integer.parseInt(properties.getProperty("MaxFrameRate", "60"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -233,7 +398,7 @@ public class Config {
             String playerKeysString = properties.getProperty("PlayerKeys" + (i + 1), defaultCodes);
             if (playerKeysString.length() > 0) {
                 String[] codes = playerKeysString.split(",");
-                if (codes.length != tableSize)
+                if (startup && codes.length != tableSize)
                     logger.severe("warning: player " + (i + 1) + " keys (" + codes.length + ") mismatch table size (" + tableSize + ").");
                 for (int j = 0; j < Math.min(codes.length, tableSize); ++j) // parse the key codes string
                     playerKeys[i][j] = Integer.parseInt(codes[j]);
@@ -244,4 +409,20 @@ public class Config {
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    /**
+     * @param game - the number of a game in a simulation or a tournament.
+     * @return - the seed of the game (distinct per game, config.seed for game 0).
+     */
+    public long seed(int game) {
+        return seed + game * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * @param player - the id of a computer player.
+     * @return - the name of the AI strategy of the player.
+     */
+    public String aiStrategy(int player) {
+        return aiStrategies[Math.max(0, player - humanPlayers) % aiStrategies.length];
+    }
 }
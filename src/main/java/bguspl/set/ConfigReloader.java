@@ -0,0 +1,148 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Watches the configuration file (with a WatchService) and, whenever it changes, reads it into a new Config and
+ * publishes it as the game's current configuration (see Env.currentConfig()), so the turn timeout, the freezes and the
+ * table delay can be tuned while the game runs. The game entities read those settings from the current snapshot, with
+ * a single volatile read and no locking; the other settings are read from env.config and keep their startup values.
+ * A change to the settings the game's structures are sized by (e.g. the number of players or the size of the table)
+ * is rejected with a warning, as is a file that cannot be parsed.
+ */
+public class ConfigReloader implements Closeable {
+
+    /**
+     * The time to wait after a change for the rest of it (editors often write a file in several steps).
+     */
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Logger logger;
+    private final Env env;
+    private final Path file;
+    private final WatchService watcher;
+    private final Thread thread;
+
+    /**
+     * Starts watching the directory of the configuration file.
+     *
+     * @param filename - the configuration file.
+     * @param env      - the game environment to publish the new configurations to.
+     * @throws IOException - if the directory cannot be watched.
+     */
+    public ConfigReloader(Logger logger, String filename, Env env) throws IOException {
+        this.logger = logger;
+        this.env = env;
+        file = Paths.get(filename).toAbsolutePath();
+        watcher = file.getFileSystem().newWatchService();
+        file.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+        thread = new Thread(this::run, "config-reloader");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the reloader thread.
+     */
+    public void start() {
+        thread.start();
+        logger.info("watching " + file + " for configuration changes");
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = changed(key);
+                if (!key.reset()) {
+                    logger.severe("warning: cannot watch " + file.getParent() + " anymore");
+                    return;
+                }
+                if (!changed) continue;
+
+                Thread.sleep(SETTLE_MILLIS);
+                for (WatchKey more = watcher.poll(); more != null; more = watcher.poll()) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+            if (file.getFileName().equals(event.context())) changed = true;
+        return changed;
+    }
+
+    /**
+     * Reads the configuration file and publishes it, unless it cannot be read or it changes the game's structure.
+     */
+    void reload() {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        } catch (IOException e) {
+            logger.severe("warning: cannot reload the configuration from " + file + ": " + e);
+            return;
+        }
+
+        Config update;
+        try {
+            update = env.config.reloaded(properties);
+        } catch (RuntimeException e) {
+            logger.severe("warning: ignoring an invalid configuration in " + file + ": " + e);
+            return;
+        }
+        String change = structureChange(env.config, update);
+        if (change != null) {
+            logger.severe("warning: ignoring the new configuration in " + file + ", changing " + change + " needs a restart");
+            return;
+        }
+
+        env.currentConfig(update);
+        logger.info("reloaded the configuration: turn timeout " + update.turnTimeoutMillis + " ms (warning "
+                + update.turnTimeoutWarningMillis + " ms), point freeze " + update.pointFreezeMillis
+                + " ms, penalty freeze " + update.penaltyFreezeMillis + " ms, table delay " + update.tableDelayMillis + " ms");
+    }
+
+    /**
+     * @return - the name of a setting the game's structures are sized by that differs between two configurations, or
+     *           null if there is none.
+     */
+    static String structureChange(Config config, Config update) {
+        if (config.featureSize != update.featureSize) return "FeatureSize";
+        if (config.featureCount != update.featureCount) return "FeatureCount";
+        if (config.humanPlayers != update.humanPlayers) return "HumanPlayers";
+        if (config.computerPlayers != update.computerPlayers) return "ComputerPlayers";
+        if (config.rows != update.rows) return "Rows";
+        if (config.columns != update.columns) return "Columns";
+        if (config.keyQueueSize != update.keyQueueSize) return "KeyQueueSize";
+        if (config.simulation != update.simulation) return "Simulation";
+        return null;
+    }
+
+    /**
+     * Stops watching the configuration file.
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+}
@@ -1,5 +1,8 @@
 package bguspl.set;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
 
 public class Env {
@@ -9,10 +12,67 @@ public class Env {
     public final UserInterface ui;
     public final Util util;
 
+    /**
+     * The executor that runs the game loops (dealer, players and AI), possibly shared by several games. If null,
+     * every loop gets a thread of its own.
+     */
+    public final ExecutorService executor;
+
+    /**
+     * The metrics that the game entities record into (possibly shared by several games).
+     */
+    public final Metrics metrics;
+
+    /**
+     * The current configuration: config, until a ConfigReloader publishes a newer snapshot. The settings that may
+     * change during a game (the turn timeout, the freezes and the table delay) are read from here.
+     */
+    private volatile Config current;
+
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, null);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ExecutorService executor) {
+        this(logger, config, ui, util, executor, new Metrics());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ExecutorService executor, Metrics metrics) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.current = config;
+    }
+
+    /**
+     * @return - the current configuration snapshot (never null).
+     */
+    public Config currentConfig() {
+        return current;
+    }
+
+    /**
+     * Publishes a new configuration snapshot (with the same structure as config, see ConfigReloader).
+     */
+    void currentConfig(Config config) {
+        current = config;
+    }
+
+    /**
+     * Starts a game loop, on the executor if there is one and on a new thread otherwise (a virtual thread if
+     * config.virtualThreads).
+     *
+     * @param loop - the loop.
+     * @param name - the name of the loop (for its thread).
+     * @return - a future that completes when the loop ends.
+     */
+    public Future<?> start(Runnable loop, String name) {
+        FutureTask<?> task = new FutureTask<>(loop, null);
+        if (executor != null) executor.execute(task);
+        else VirtualThreads.newThread(config.virtualThreads, task, name).start();
+        return task;
     }
 }
@@ -0,0 +1,255 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Serves a game to remote clients over TCP, on a single thread with a non-blocking NIO selector.
+ * Every connection is given a human player that has no connection (or becomes a spectator if there is none), and it
+ * receives the events of the game's user interface (see UserInterfaceNetwork), starting with a snapshot of the display.
+ * The events are sent in frames (see UserInterfaceEncoder), at most config.maxFrameRate times per second.
+ * A client presses keys by sending slots, as big-endian ints; the key presses of spectators are ignored.
+ * A connection that falls more than MAX_QUEUED_BYTES behind is closed (the events are deltas and cannot be skipped).
+ */
+public class GameServer implements Closeable {
+
+    private static final int MAX_QUEUED_BYTES = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 1 << 12;
+    private static final int BACKLOG = 1 << 12;
+
+    /**
+     * A client connection (used by the server thread only).
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final int player;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        long queuedBytes;
+
+        Connection(SocketChannel channel, int player) {
+            this.channel = channel;
+            this.player = player;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final Player[] players;
+    private final UserInterfaceNetwork ui;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final List<Connection> connections = new ArrayList<>();
+
+    /**
+     * The connection of every human player (null if it has none).
+     */
+    private final Connection[] owners;
+
+    /**
+     * True when the user interface has pending events that the server thread was not woken up for yet.
+     */
+    private final AtomicBoolean pendingReady = new AtomicBoolean();
+
+    /**
+     * The minimal time between two broadcasts of the events (the events in between are sent together).
+     */
+    private final long frameNanos;
+
+    private volatile boolean terminate;
+    private Thread thread;
+
+    /**
+     * Opens the server socket (at config.serverAddress and config.serverPort).
+     *
+     * @param players - the players of the game (the array may be filled later, before start()).
+     * @throws IOException - if the socket cannot be opened.
+     */
+    public GameServer(Logger logger, Config config, Player[] players) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+        ui = new UserInterfaceNetwork(config, this::wakeUp);
+        owners = new Connection[config.humanPlayers];
+        frameNanos = config.maxFrameRate > 0 ? TimeUnit.SECONDS.toNanos(1) / config.maxFrameRate : 0;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(config.serverAddress, config.serverPort), BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return - the user interface whose events are sent to the clients.
+     */
+    public UserInterface ui() {
+        return ui;
+    }
+
+    /**
+     * @return - the port the server listens on.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts the server thread.
+     */
+    public void start() {
+        thread = new Thread(this::run, "server");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("serving on " + serverChannel.socket().getLocalSocketAddress());
+    }
+
+    private void wakeUp() {
+        if (!pendingReady.getAndSet(true)) selector.wakeup();
+    }
+
+    private void run() {
+        long nextBroadcast = System.nanoTime();
+        try {
+            while (!terminate) {
+                // wait for the network, and for the next frame if there are events to send
+                long wait = pendingReady.get() ? nextBroadcast - System.nanoTime() : Long.MAX_VALUE;
+                if (wait <= 0) selector.selectNow();
+                else selector.select(wait == Long.MAX_VALUE ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+
+                long now = System.nanoTime();
+                if (now - nextBroadcast >= 0 && pendingReady.getAndSet(false)) {
+                    broadcast(ui.drain());
+                    nextBroadcast = now + frameNanos;
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) read(connection);
+                        if (key.isValid() && key.isWritable()) write(connection);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+            broadcast(ui.drain()); // the last events (e.g. the winner), without waiting for slow connections
+        } catch (IOException | ClosedSelectorException e) {
+            if (!terminate) logger.severe("server failed: " + e);
+        } finally {
+            for (Connection connection : new ArrayList<>(connections))
+                disconnect(connection);
+        }
+    }
+
+    private void accept() throws IOException {
+        for (SocketChannel channel = serverChannel.accept(); channel != null; channel = serverChannel.accept()) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            int player = -1;
+            for (int i = 0; i < owners.length && player < 0; ++i)
+                if (owners[i] == null) player = i;
+            // the pending events, sent to the new connection too after its snapshot, end with the snapshot's state
+            // (every event sets a part of the display), so they leave the display as it is
+            Connection connection = new Connection(channel, player);
+            if (player >= 0) owners[player] = connection;
+            connections.add(connection);
+            channel.register(selector, SelectionKey.OP_READ, connection);
+            send(connection, ByteBuffer.wrap(ui.snapshot(player)));
+        }
+    }
+
+    private void read(Connection connection) {
+        int count;
+        try {
+            count = connection.channel.read(connection.in);
+        } catch (IOException e) {
+            count = -1;
+        }
+        if (count < 0) {
+            disconnect(connection);
+            return;
+        }
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= Integer.BYTES) {
+            int slot = in.getInt();
+            if (connection.player >= 0 && slot >= 0 && slot < config.tableSize && players[connection.player] != null)
+                players[connection.player].keyPressed(slot);
+        }
+        in.compact();
+    }
+
+    private void broadcast(byte[] events) {
+        if (events == null) return;
+        for (Connection connection : new ArrayList<>(connections))
+            send(connection, ByteBuffer.wrap(events));
+    }
+
+    private void send(Connection connection, ByteBuffer bytes) {
+        connection.out.add(bytes);
+        connection.queuedBytes += bytes.remaining();
+        if (connection.queuedBytes > MAX_QUEUED_BYTES) {
+            logger.severe("disconnecting a slow client (player " + connection.player + ")");
+            disconnect(connection);
+            return;
+        }
+        write(connection);
+    }
+
+    private void write(Connection connection) {
+        try {
+            while (!connection.out.isEmpty()) {
+                ByteBuffer bytes = connection.out.peek();
+                connection.queuedBytes -= connection.channel.write(bytes);
+                if (bytes.hasRemaining()) break;
+                connection.out.poll();
+            }
+            SelectionKey key = connection.channel.keyFor(selector);
+            if (key != null && key.isValid())
+                key.interestOps(connection.out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        if (!connections.remove(connection)) return;
+        if (connection.player >= 0) owners[connection.player] = null;
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Stops the server thread (sending the last events it can without blocking) and closes all the connections.
+     */
+    @Override
+    public void close() throws IOException {
+        terminate = true;
+        selector.wakeup();
+        if (thread != null) try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+}
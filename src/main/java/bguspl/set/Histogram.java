@@ -0,0 +1,138 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of non-negative values (e.g. latencies in nanoseconds), in the style of HdrHistogram: the
+ * buckets are log-linear, SUB_BUCKETS per power of 2, so every value is kept with a relative error below
+ * 1 / SUB_BUCKETS (about 6%) in a fixed array of counts. Recording is a few shifts and an atomic add, and never
+ * allocates or locks. Like a LongAdder, the counts are striped: every thread adds to the stripe its id hashes to, and
+ * reading sums up the stripes, so threads recording the same value rarely contend for a bucket.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets: the values below SUB_BUCKETS have a bucket each, and every power of 2 above that has
+     * SUB_BUCKETS buckets.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * The number of stripes of counts (a power of 2, at least the number of processors, up to MAX_STRIPES).
+     */
+    private static final int MAX_STRIPES = 16;
+    private static final int STRIPES = Math.min(MAX_STRIPES,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1));
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram() {
+        for (int i = 0; i < STRIPES; ++i)
+            stripes[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * @param value - the value to record (negative values are recorded as 0).
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Records a value as if it was recorded times times (e.g. a value sampled once in every times values).
+     *
+     * @param value - the value to record (negative values are recorded as 0).
+     * @param times - the number of times to record it.
+     */
+    public void record(long value, long times) {
+        if (value < 0) value = 0;
+        stripe().addAndGet(bucket(value), times);
+        count.add(times);
+        sum.add(value * times);
+        for (long m = max.get(); value > m && !max.compareAndSet(m, value); m = max.get()) ;
+    }
+
+    /**
+     * @return - the stripe of counts of the current thread.
+     */
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().getId();
+        return stripes[(int) (id ^ id >>> 16) & (STRIPES - 1)];
+    }
+
+    /**
+     * @return - the count of a bucket, summed up over the stripes.
+     */
+    private long count(int bucket) {
+        long count = 0;
+        for (AtomicLongArray stripe : stripes)
+            count += stripe.get(bucket);
+        return count;
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return - the highest value that falls in a bucket.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Computes a percentile of the values recorded so far (while values are being recorded, the result is
+     * approximate).
+     *
+     * @param percentile - the percentile (between 0 and 100).
+     * @return - the highest value of the bucket of the percentile (capped by the maximum), or 0 if there are no values.
+     */
+    public long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+            total += counts[i] = count(i);
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen > 0 && seen >= rank) return Math.min(highestValue(i), max.get());
+        }
+        return 0;
+    }
+
+    /**
+     * @return - a one line summary: count, mean, median, 99th percentile and maximum (with values in microseconds).
+     */
+    public String summary() {
+        return String.format("count %d mean %.1fus p50 %.1fus p99 %.1fus max %.1fus",
+                count(), mean() / 1e3, percentile(50) / 1e3, percentile(99) / 1e3, max() / 1e3);
+    }
+}
@@ -16,11 +16,11 @@ class InputManager extends KeyAdapter {
     private final Player[] players;
     int[] keyMap = new int[MAX_KEY_CODE + 1];
     int[] keyToSlot = new int[MAX_KEY_CODE + 1];
-    private final Logger logger;
+    private final StructuredLogger log;
 
     public InputManager(Logger logger, Config config, Player[] players) {
         this.players = players;
-        this.logger = logger;
+        this.log = new StructuredLogger(logger);
 
         // initialize the keys
         for (int player = 0; player < config.players; ++player)
@@ -43,7 +43,7 @@ class InputManager extends KeyAdapter {
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
         if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
+            log.severe("key {} was pressed by player {}", keyCode, player + 1);
             players[player].keyPressed(keyToSlot[keyCode]);
         }
     }
@@ -0,0 +1,152 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stand-in client of a GameServer for load tests: opens many connections from a single thread (with a non-blocking
+ * NIO selector), has every connection that was given a player press random slots at a fixed rate, and reports how many
+ * key presses were sent and how many events (and bytes) were received, decoding the events with a UserInterfaceDecoder. Run it against a game served on a port, e.g.
+ * {@code java -cp target/classes bguspl.set.LoadClient localhost 7777 2000 30 5}
+ * (host, port, connections, seconds, key presses per second per player). Thousands of connections may need a higher
+ * limit of open files (ulimit -n) on both sides.
+ */
+public class LoadClient {
+
+    private static final int UNKNOWN = -2;
+    private static final long TICK_MILLIS = 10;
+
+    private static class Connection {
+        final SocketChannel channel;
+        final UserInterfaceDecoder decoder = new UserInterfaceDecoder(new UserInterfaceHeadless());
+        ByteBuffer in = ByteBuffer.allocate(1 << 14);
+        final ByteBuffer out = ByteBuffer.allocate(Integer.BYTES);
+        int player = UNKNOWN;
+        int tableSize;
+        long receivedBytes;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+        double rate = args.length > 4 ? Double.parseDouble(args[4]) : 5;
+
+        Selector selector = Selector.open();
+        List<Connection> connections = new ArrayList<>();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        int failed = 0;
+        for (int i = 0; i < count; ++i) {
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel);
+                channel.register(selector, channel.connect(address) ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connection);
+                connections.add(connection);
+            } catch (IOException e) {
+                ++failed;
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long presses = 0, dropped = 0, lastTick = start;
+        double owed = 0; // the key presses each player is due to send
+        for (long now = start; now < end; now = System.nanoTime()) {
+            selector.select(TICK_MILLIS);
+            for (SelectionKey key : selector.selectedKeys()) {
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isConnectable() && connection.channel.finishConnect()) key.interestOps(SelectionKey.OP_READ);
+                    else if (key.isReadable()) read(connection, key);
+                } catch (IOException e) {
+                    ++failed;
+                    key.cancel();
+                    connection.channel.close();
+                }
+            }
+            selector.selectedKeys().clear();
+
+            owed += rate * (now - lastTick) / 1e9;
+            lastTick = now;
+            for (; owed >= 1; --owed)
+                for (Connection connection : connections) {
+                    if (connection.player < 0 || !connection.channel.isOpen()) continue;
+                    connection.out.clear();
+                    connection.out.putInt(random.nextInt(connection.tableSize)).flip();
+                    try {
+                        if (connection.channel.write(connection.out) == Integer.BYTES) ++presses;
+                        else ++dropped; // a partial int would corrupt the stream, the socket buffer is full anyway
+                    } catch (IOException e) {
+                        connection.channel.close();
+                    }
+                }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int players = 0, spectators = 0, open = 0;
+        long received = 0, events = 0;
+        for (Connection connection : connections) {
+            if (connection.player >= 0) ++players;
+            else if (connection.player == -1) ++spectators;
+            if (connection.channel.isOpen()) ++open;
+            received += connection.receivedBytes;
+            events += connection.decoder.events();
+            connection.channel.close();
+        }
+        selector.close();
+        System.out.printf("%d connections (%d players, %d spectators, %d failed, %d open at the end) in %.1f seconds%n",
+                connections.size(), players, spectators, failed, open, elapsed);
+        System.out.printf("sent %d key presses (%.0f per second, %d dropped), received %d events in %d bytes (%.1f MB per second)%n",
+                presses, presses / elapsed, dropped, events, received, received / elapsed / 1e6);
+    }
+
+    /**
+     * Reads the events sent to a connection: parses the welcome message and decodes the frames of events after it.
+     */
+    private static void read(Connection connection, SelectionKey key) throws IOException {
+        int count = connection.channel.read(connection.in);
+        if (count < 0) {
+            key.cancel();
+            connection.channel.close();
+            return;
+        }
+        connection.receivedBytes += count;
+        ByteBuffer in = connection.in;
+        in.flip();
+        if (connection.player == UNKNOWN) {
+            if (in.remaining() < UserInterfaceNetwork.WELCOME_BYTES) {
+                in.compact();
+                return;
+            }
+            if (in.get() != UserInterfaceNetwork.WELCOME) throw new IOException("no welcome message");
+            connection.player = in.getInt();
+            connection.tableSize = in.getInt() * in.getInt();
+            in.getInt(); // players
+        }
+        try {
+            connection.decoder.decode(in);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("bad events: " + e.getMessage());
+        }
+        in.compact();
+        if (!in.hasRemaining()) // a frame larger than the buffer
+            connection.in = (ByteBuffer) ByteBuffer.allocate(in.capacity() * 2).put((ByteBuffer) in.flip());
+    }
+}
@@ -1,11 +1,16 @@
 package bguspl.set;
 
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameReplayer;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -18,15 +23,24 @@ import java.util.logging.*;
 public class Main {
 
     private static Dealer dealer;
+    private static Tournament tournament;
     private static Thread mainThread;
 
     private static boolean xButtonPressed = false;
+
+    /**
+     * The number of log records that can wait for the log writer thread (more are dropped).
+     */
+    private static final int LOG_BUFFER_SIZE = 1 << 16;
     private static Logger logger;
 
+    private static final String CONFIG_FILE = "config.properties";
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
         if (dealer != null) dealer.terminate();
+        if (tournament != null) tournament.terminate();
         mainThread.join();
     }
 
@@ -42,22 +56,82 @@ public class Main {
         // create the game environment objects
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
-        Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        Config config = new Config(logger, CONFIG_FILE);
+        Metrics metrics = new Metrics();
+        metrics.register(logger);
+        if (config.metricsDumpMillis > 0) metrics.startDumping(logger, config.metricsDumpMillis);
+        Util util = new UtilImpl(config, metrics);
+
+        if (!config.replayFile.isEmpty()) {
+            replay(config.replayFile);
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+            return;
+        }
+
+        if (config.tournamentGames > 0) {
+            tournament = new Tournament(logger, config, util, metrics);
+            tournament.run();
+            if (config.metricsDumpMillis > 0) metrics.dump(logger);
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+            return;
+        }
+
+        if (config.simulation) {
+            simulate(config, util, metrics);
+            if (config.metricsDumpMillis > 0) metrics.dump(logger);
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+            return;
+        }
 
         Player[] players = new Player[config.players];
         UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
+        GameServer server = null;
+        if (config.serverPort > 0) {
+            try {
+                server = new GameServer(logger, config, players);
+                ui = server.ui();
+            } catch (IOException e) {
+                logger.severe("cannot serve on port " + config.serverPort + ": " + e);
+                System.out.println("Cannot serve on port " + config.serverPort + ". Check logs.");
+                for (Handler h : logger.getHandlers()) h.flush();
+                return;
+            }
+        } else {
+            try {
+                ui = new UserInterfaceSwing(logger, config, players);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                logger.severe("error creating swing user interface: " + e.getMessage());
+                logger.severe("will try to run without user interface");
+                if (config.humanPlayers > 0)
+                    logger.severe("warning: running with human players with no user interface");
+            }
+        }
+        UserInterfaceFanOut.Subscription displayRecording = null;
+        if (!config.displayRecordFile.isEmpty()) {
+            try {
+                UserInterfaceFanOut fanOut = new UserInterfaceFanOut(logger, config.spectatorBufferSize, ui);
+                OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(config.displayRecordFile)), 1 << 16);
+                displayRecording = fanOut.subscribe("display-recorder", new UserInterfaceRecorder(out), UserInterfaceFanOut.Overrun.DROP);
+                ui = fanOut;
+            } catch (IOException e) {
+                logger.severe("cannot record the display to " + config.displayRecordFile + ": " + e);
+            }
         }
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        Env env = new Env(logger, config, ui, util, null, metrics);
+        ConfigReloader reloader = null;
+        if (config.reloadConfig) {
+            try {
+                reloader = new ConfigReloader(logger, CONFIG_FILE, env);
+                reloader.start();
+            } catch (IOException e) {
+                logger.severe("cannot watch the configuration file: " + e);
+            }
+        }
 
         // create the game entities
         Table table = new Table(env);
@@ -65,7 +139,8 @@ public class Main {
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
-        // start the dealer thread
+        // start the dealer thread (and the server, once the players exist)
+        if (server != null) server.start();
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
         dealerThread.startWithLog();
 
@@ -75,14 +150,85 @@ public class Main {
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
+            if (config.metricsDumpMillis > 0) metrics.dump(logger);
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            if (displayRecording != null) displayRecording.close();
+            if (reloader != null) try {
+                reloader.close();
+            } catch (IOException e) {
+                logger.severe("cannot stop watching the configuration file: " + e);
+            }
+            if (server != null) try {
+                server.close();
+            } catch (IOException e) {
+                logger.severe("cannot close the server: " + e);
+            }
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
+    /**
+     * Plays config.simulationGames headless games one after another, as fast as possible, and reports the rate.
+     *
+     * @param config - the game configuration.
+     * @param util    - the game utilities (shared by the games).
+     * @param metrics - the metrics (shared by the games).
+     */
+    private static void simulate(Config config, Util util, Metrics metrics) {
+        if (config.humanPlayers > 0)
+            logger.severe("warning: running a simulation with human players (they will not play)");
+        Env env = new Env(logger, config, new UserInterfaceHeadless(), util, null, metrics);
+
+        long start = System.nanoTime();
+        int games = 0;
+        while (games < config.simulationGames && !xButtonPressed) {
+            Table table = new Table(env);
+            Player[] players = new Player[config.players];
+            dealer = new Dealer(env, table, players, config.seed(games));
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+
+            ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer-" + games, logger);
+            dealerThread.start();
+            try {
+                dealerThread.join();
+            } catch (InterruptedException e) {
+                break;
+            }
+            ++games;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        String report = String.format("simulated %d games in %.3f seconds (%.2f games per second)", games, seconds, games / seconds);
+        logger.severe(report);
+        System.out.println(report);
+    }
+
+    /**
+     * Replays a recorded game at full speed and reports the rate and whether the dealer's verdicts match the recorded
+     * ones.
+     *
+     * @param file - the recorded game.
+     */
+    private static void replay(String file) {
+        try {
+            GameReplayer replayer = new GameReplayer(logger, file);
+            long start = System.nanoTime();
+            replayer.replay();
+            long nanos = System.nanoTime() - start;
+            String report = String.format("replayed %d events (%d verdicts, %d mismatches) of a %.3f seconds game with seed %d in %.3f seconds (%.0f events per second)",
+                    replayer.events(), replayer.verdicts(), replayer.mismatches(), replayer.recordedNanos() / 1e9,
+                    replayer.seed, nanos / 1e9, replayer.events() * 1e9 / nanos);
+            logger.severe(report);
+            System.out.println(report);
+        } catch (IOException e) {
+            logger.severe("cannot replay " + file + ": " + e);
+        }
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
@@ -98,7 +244,8 @@ public class Main {
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        // the game threads never write to the file themselves, a background thread does
+        logger.addHandler(new AsyncLogHandler(handler, LOG_BUFFER_SIZE));
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
@@ -106,10 +253,11 @@ public class Main {
 
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
-        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
+        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new Formatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+            // not synchronized: it keeps no state, and with an AsyncLogHandler only its writer thread formats
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(), lr.getMessage()
                 );
@@ -0,0 +1,186 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * The hot path metrics of the game, recorded by the dealer, the players, the table and the utilities: striped
+ * counters (LongAdder) and latency histograms, cheap enough to be always on. One instance is shared by everything that
+ * runs in an Env (all the games of a simulation or a tournament). The metrics can be dumped to the log periodically
+ * and are exposed over JMX.
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * The time from queuing a key press to placing the token it asks for.
+     */
+    public final Histogram keyPressToToken = new Histogram();
+
+    /**
+     * The time from claiming a set to the dealer's verdict.
+     */
+    public final Histogram claimToVerdict = new Histogram();
+
+    /**
+     * The duration of a search for sets (Util.findSets), sampled (see UtilImpl): its count is an estimate, the exact
+     * number of searches is findSetsCalls.
+     */
+    public final Histogram findSets = new Histogram();
+    public final LongAdder findSetsCalls = new LongAdder();
+
+    public final LongAdder tokensPlaced = new LongAdder();
+    public final LongAdder dealerWakeUps = new LongAdder();
+    public final LongAdder reshuffles = new LongAdder();
+
+    /**
+     * The time the metrics started (System.nanoTime()), for rates.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * The dealer wake-ups and the time at the previous dump, for the rate between dumps.
+     */
+    private long dumpedWakeUps;
+    private long dumpedTime = startTime;
+
+    /**
+     * Starts a daemon thread that dumps the metrics to the log periodically.
+     *
+     * @param logger - the logger.
+     * @param periodMillis - the period of the dumps.
+     */
+    public void startDumping(Logger logger, long periodMillis) {
+        Thread dumper = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(periodMillis);
+                    dump(logger);
+                }
+            } catch (InterruptedException ignored) {}
+        }, "metrics-dumper");
+        dumper.setDaemon(true);
+        dumper.start();
+    }
+
+    /**
+     * Logs the metrics (one line each).
+     *
+     * @param logger - the logger.
+     */
+    public synchronized void dump(Logger logger) {
+        long now = System.nanoTime();
+        long wakeUps = dealerWakeUps.sum();
+        double seconds = (now - dumpedTime) / 1e9;
+        logger.info("metrics: key press to token: " + keyPressToToken.summary());
+        logger.info("metrics: claim to verdict: " + claimToVerdict.summary());
+        logger.info("metrics: findSets: calls " + findSetsCalls.sum() + " sampled " + findSets.summary());
+        logger.info(String.format("metrics: tokens placed %d dealer wake-ups %d (%.1f per second) reshuffles %d",
+                tokensPlaced.sum(), wakeUps, seconds > 0 ? (wakeUps - dumpedWakeUps) / seconds : 0.0, reshuffles.sum()));
+        dumpedWakeUps = wakeUps;
+        dumpedTime = now;
+    }
+
+    /**
+     * Registers the metrics as the platform MBean bguspl.set:type=Metrics (replacing an earlier registration).
+     *
+     * @param logger - the logger, for a failure to register.
+     */
+    public void register(Logger logger) {
+        try {
+            ObjectName name = new ObjectName("bguspl.set:type=Metrics");
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException | SecurityException e) {
+            logger.severe("cannot register the metrics MBean: " + e);
+        }
+    }
+
+    @Override
+    public long getKeyPresses() {
+        return keyPressToToken.count();
+    }
+
+    @Override
+    public long getKeyPressToTokenP50() {
+        return keyPressToToken.percentile(50);
+    }
+
+    @Override
+    public long getKeyPressToTokenP99() {
+        return keyPressToToken.percentile(99);
+    }
+
+    @Override
+    public long getKeyPressToTokenMax() {
+        return keyPressToToken.max();
+    }
+
+    @Override
+    public long getClaims() {
+        return claimToVerdict.count();
+    }
+
+    @Override
+    public long getClaimToVerdictP50() {
+        return claimToVerdict.percentile(50);
+    }
+
+    @Override
+    public long getClaimToVerdictP99() {
+        return claimToVerdict.percentile(99);
+    }
+
+    @Override
+    public long getClaimToVerdictMax() {
+        return claimToVerdict.max();
+    }
+
+    @Override
+    public long getFindSetsCalls() {
+        return findSetsCalls.sum();
+    }
+
+    @Override
+    public long getFindSetsP50() {
+        return findSets.percentile(50);
+    }
+
+    @Override
+    public long getFindSetsP99() {
+        return findSets.percentile(99);
+    }
+
+    @Override
+    public long getFindSetsMax() {
+        return findSets.max();
+    }
+
+    @Override
+    public long getTokensPlaced() {
+        return tokensPlaced.sum();
+    }
+
+    @Override
+    public long getDealerWakeUps() {
+        return dealerWakeUps.sum();
+    }
+
+    /**
+     * @return - the average number of dealer wake-ups per second since the metrics started.
+     */
+    @Override
+    public double getDealerWakeUpsPerSecond() {
+        long elapsed = System.nanoTime() - startTime;
+        return elapsed > 0 ? dealerWakeUps.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+    }
+
+    @Override
+    public long getReshuffles() {
+        return reshuffles.sum();
+    }
+}
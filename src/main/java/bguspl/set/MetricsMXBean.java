@@ -0,0 +1,39 @@
+package bguspl.set;
+
+/**
+ * The management interface of the game metrics (registered as bguspl.set:type=Metrics). Latencies are in nanoseconds.
+ */
+public interface MetricsMXBean {
+
+    long getKeyPresses();
+
+    long getKeyPressToTokenP50();
+
+    long getKeyPressToTokenP99();
+
+    long getKeyPressToTokenMax();
+
+    long getClaims();
+
+    long getClaimToVerdictP50();
+
+    long getClaimToVerdictP99();
+
+    long getClaimToVerdictMax();
+
+    long getFindSetsCalls();
+
+    long getFindSetsP50();
+
+    long getFindSetsP99();
+
+    long getFindSetsMax();
+
+    long getTokensPlaced();
+
+    long getDealerWakeUps();
+
+    double getDealerWakeUpsPerSecond();
+
+    long getReshuffles();
+}
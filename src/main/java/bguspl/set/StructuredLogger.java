@@ -0,0 +1,47 @@
+package bguspl.set;
+
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs messages given as a template with "{}" placeholders and up to two long arguments, for the hot paths (UI updates
+ * and key presses). Nothing is done for a level the logger does not log. Otherwise, if the logger has an
+ * AsyncLogHandler the message is queued unformatted, allocating nothing, and it is formatted by the log writer thread
+ * (the logger's other handlers, if any, do not get it); if it does not, the message is formatted and logged right away.
+ */
+public class StructuredLogger {
+
+    private final Logger logger;
+
+    /**
+     * The asynchronous handler of the logger (null if it has none).
+     */
+    private final AsyncLogHandler handler;
+
+    public StructuredLogger(Logger logger) {
+        this.logger = logger;
+        AsyncLogHandler async = null;
+        for (Handler h : logger.getHandlers())
+            if (h instanceof AsyncLogHandler) async = (AsyncLogHandler) h;
+        handler = async;
+    }
+
+    public void severe(String template) {
+        log(Level.SEVERE, template, 0, 0, 0);
+    }
+
+    public void severe(String template, long first) {
+        log(Level.SEVERE, template, 1, first, 0);
+    }
+
+    public void severe(String template, long first, long second) {
+        log(Level.SEVERE, template, 2, first, second);
+    }
+
+    private void log(Level level, String template, int args, long first, long second) {
+        if (!logger.isLoggable(level)) return;
+        if (handler != null) handler.publish(level, template, args, first, second);
+        else logger.log(level, AsyncLogHandler.format(new StringBuilder(), template, args, first, second));
+    }
+}
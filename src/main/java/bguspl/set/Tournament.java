@@ -0,0 +1,160 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Plays many headless games concurrently in one JVM and sums up the results per player strategy.
+ * The loops of all the games (dealers, players and AI) run on one shared executor, and at most
+ * config.tournamentParallelism games are in progress at any time. The loops block (e.g. a player waits for its key
+ * presses), so each one needs a thread of its own: with config.virtualThreads they are virtual threads, multiplexed
+ * onto a few carrier threads and not pooled, and otherwise a cached pool of platform threads reuses the threads of
+ * finished games.
+ */
+public class Tournament {
+
+    /**
+     * The results of a strategy, summed up over all the games.
+     */
+    private static class Standing {
+        final LongAdder appearances = new LongAdder();
+        final LongAdder points = new LongAdder();
+        final LongAdder wins = new LongAdder();
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+    private final Metrics metrics;
+
+    /**
+     * The results, by strategy name (sorted, for the report).
+     */
+    private final Map<String, Standing> standings = new ConcurrentSkipListMap<>();
+
+    /**
+     * The dealers of the games in progress (null entries for games that are not), for terminate().
+     */
+    private final Dealer[] dealers;
+
+    private volatile boolean terminate;
+
+    public Tournament(Logger logger, Config config, Util util, Metrics metrics) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+        this.metrics = metrics;
+        dealers = new Dealer[config.tournamentGames];
+    }
+
+    /**
+     * Plays all the games of the tournament and reports the results.
+     */
+    public void run() {
+        if (config.humanPlayers > 0)
+            logger.severe("warning: running a tournament with human players (they will not play)");
+
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory factory = loop -> {
+            Thread thread = VirtualThreads.newThread(config.virtualThreads, loop, "tournament-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // the pool must not be bounded: a game's loops wait for each other (e.g. a player waits for its AI loop)
+        ExecutorService executor = config.virtualThreads ? VirtualThreads.newThreadPerTaskExecutor(factory) : null;
+        if (executor == null) executor = Executors.newCachedThreadPool(factory);
+        Env env = new Env(logger, config, new UserInterfaceHeadless(), util, executor, metrics);
+        Semaphore slots = new Semaphore(config.tournamentParallelism);
+        CountDownLatch done = new CountDownLatch(config.tournamentGames);
+
+        long start = System.nanoTime();
+        int games = 0;
+        try {
+            for (; games < config.tournamentGames && !terminate; ++games) {
+                slots.acquire();
+                int game = games;
+                env.start(() -> {
+                    try {
+                        play(env, game);
+                    } finally {
+                        slots.release();
+                        done.countDown();
+                    }
+                }, "dealer-" + game);
+            }
+            for (int i = games; i < config.tournamentGames; ++i) done.countDown();
+            done.await();
+        } catch (InterruptedException e) {
+            terminate();
+        } finally {
+            executor.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        report(String.format("played %d tournament games in %.3f seconds (%.2f games per second)", games, seconds, games / seconds));
+        standings.forEach((strategy, standing) -> report(String.format("%-10s appearances: %d points: %d wins: %d (%.1f%%) points per game: %.2f",
+                strategy, standing.appearances.sum(), standing.points.sum(), standing.wins.sum(),
+                100.0 * standing.wins.sum() / standing.appearances.sum(),
+                (double) standing.points.sum() / standing.appearances.sum())));
+    }
+
+    /**
+     * Plays one game on the current thread (as its dealer) and records its results.
+     *
+     * @param env  - the environment shared by the games.
+     * @param game - the number of the game.
+     */
+    private void play(Env env, int game) {
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, config.seed(game));
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+
+        synchronized (dealers) {
+            dealers[game] = dealer;
+        }
+        if (terminate) dealer.terminate();
+        dealer.run();
+        synchronized (dealers) {
+            dealers[game] = null;
+        }
+
+        int max = Arrays.stream(players).mapToInt(Player::score).max().orElse(0);
+        for (Player player : players) {
+            Standing standing = standings.computeIfAbsent(player.strategy(), strategy -> new Standing());
+            standing.appearances.increment();
+            standing.points.add(player.score());
+            if (player.score() == max) standing.wins.increment();
+        }
+    }
+
+    /**
+     * Stops the tournament: no more games are started and the games in progress are terminated.
+     */
+    public void terminate() {
+        terminate = true;
+        synchronized (dealers) {
+            for (Dealer dealer : dealers)
+                if (dealer != null) dealer.terminate();
+        }
+    }
+
+    private void report(String line) {
+        logger.severe(line);
+        System.out.println(line);
+    }
+}
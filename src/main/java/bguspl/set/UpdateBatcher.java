@@ -0,0 +1,107 @@
+package bguspl.set;
+
+import javax.swing.Timer;
+import java.awt.EventQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Coalesces the updates of the Swing user interface made by any number of game threads into frames. The game threads
+ * write the new state to a pending model, mark what changed in a DirtySet and request a frame, which never blocks.
+ * A frame runs on the event dispatch thread (scheduled with invokeLater, at most one pending at a time) and applies
+ * everything marked dirty since the previous one, and frames are spaced at least 1 / maxFrameRate seconds apart.
+ */
+class UpdateBatcher {
+
+    /**
+     * A lock-free set of dirty items (e.g. slots): marking is an atomic OR of a bit, draining swaps out whole words.
+     */
+    static class DirtySet {
+
+        private final AtomicLongArray words;
+        private final int size;
+
+        DirtySet(int size) {
+            this.size = size;
+            words = new AtomicLongArray((size + Long.SIZE - 1) / Long.SIZE);
+        }
+
+        void mark(int item) {
+            int word = item / Long.SIZE;
+            long bit = 1L << item;
+            for (long bits = words.get(word); (bits & bit) == 0 && !words.compareAndSet(word, bits, bits | bit); bits = words.get(word)) ;
+        }
+
+        void markAll() {
+            for (int item = 0; item < size; ++item)
+                mark(item);
+        }
+
+        /**
+         * Clears the set and applies an action to every item that was in it (in increasing order).
+         */
+        void drain(IntConsumer action) {
+            for (int word = 0; word < words.length(); ++word)
+                for (long bits = words.get(word) == 0 ? 0 : words.getAndSet(word, 0); bits != 0; bits &= bits - 1)
+                    action.accept(word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+        }
+    }
+
+    /**
+     * The minimal time between the starts of two frames.
+     */
+    private final long frameNanos;
+
+    /**
+     * Applies the dirty state (runs on the event dispatch thread).
+     */
+    private final Runnable frame;
+
+    /**
+     * True while a frame is requested and has not started yet.
+     */
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    /**
+     * The time the previous frame started, and the timer that delays a frame requested too soon after it (event
+     * dispatch thread only).
+     */
+    private long lastFrame;
+    private Timer delay;
+
+    /**
+     * @param maxFrameRate - the maximum number of frames per second (0 or less for no limit).
+     * @param frame        - applies the dirty state.
+     */
+    UpdateBatcher(int maxFrameRate, Runnable frame) {
+        this.frameNanos = maxFrameRate > 0 ? TimeUnit.SECONDS.toNanos(1) / maxFrameRate : 0;
+        this.frame = frame;
+    }
+
+    /**
+     * Requests a frame (from any thread, after marking the changes dirty). Never blocks.
+     */
+    void request() {
+        if (requested.compareAndSet(false, true)) EventQueue.invokeLater(this::run);
+    }
+
+    private void run() {
+        long now = System.nanoTime();
+        long wait = lastFrame + frameNanos - now;
+        if (lastFrame != 0 && wait > 0) {
+            if (delay == null) {
+                delay = new Timer(0, e -> run());
+                delay.setRepeats(false);
+            }
+            delay.setInitialDelay((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+            delay.restart();
+            return;
+        }
+        lastFrame = now;
+        // changes marked from here on request another frame
+        requested.set(false);
+        frame.run();
+    }
+}
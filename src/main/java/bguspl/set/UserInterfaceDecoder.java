@@ -0,0 +1,158 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+
+import static bguspl.set.UserInterfaceEncoder.*;
+
+/**
+ * Replays the frames of events encoded by a UserInterfaceEncoder onto a UserInterface.
+ */
+public class UserInterfaceDecoder {
+
+    private final UserInterface ui;
+
+    /**
+     * The number of events replayed.
+     */
+    private long events;
+
+    /**
+     * @param ui - the user interface to replay the events onto.
+     */
+    public UserInterfaceDecoder(UserInterface ui) {
+        this.ui = ui;
+    }
+
+    public long events() {
+        return events;
+    }
+
+    /**
+     * Replays all the complete frames in a buffer (e.g. the bytes received so far from a stream). A partial frame at
+     * the end is left in the buffer, from its start.
+     *
+     * @param in - the buffer (read from its position to its limit).
+     * @return - the number of frames replayed.
+     * @throws IllegalArgumentException - if a frame is malformed.
+     */
+    public int decode(ByteBuffer in) {
+        int frames = 0;
+        while (in.hasRemaining()) {
+            int start = in.position();
+            if (!hasVarint(in)) break;
+            long length = readVarint(in, in.limit());
+            if (length < 0 || length > Integer.MAX_VALUE) throw new IllegalArgumentException("bad frame length: " + length);
+            if (in.remaining() < length) {
+                in.position(start);
+                break;
+            }
+            int end = in.position() + (int) length;
+            while (in.position() < end)
+                event(in, end);
+            ++frames;
+        }
+        return frames;
+    }
+
+    /**
+     * Replays a single frame (as returned by UserInterfaceEncoder.takeFrame()).
+     *
+     * @throws IllegalArgumentException - if the frame is malformed or incomplete.
+     */
+    public void decode(byte[] frame) {
+        ByteBuffer in = ByteBuffer.wrap(frame);
+        if (decode(in) != 1 || in.hasRemaining()) throw new IllegalArgumentException("not a single frame");
+    }
+
+    private void event(ByteBuffer in, int end) {
+        byte opcode = in.get();
+        switch (opcode) {
+            case PLACE_CARD: {
+                int card = argument(in, end);
+                ui.placeCard(card, argument(in, end));
+                break;
+            }
+            case REMOVE_CARD:
+                ui.removeCard(argument(in, end));
+                break;
+            case PLACE_TOKEN: {
+                int player = argument(in, end);
+                ui.placeToken(player, argument(in, end));
+                break;
+            }
+            case REMOVE_TOKENS:
+                ui.removeTokens();
+                break;
+            case REMOVE_SLOT_TOKENS:
+                ui.removeTokens(argument(in, end));
+                break;
+            case REMOVE_TOKEN: {
+                int player = argument(in, end);
+                ui.removeToken(player, argument(in, end));
+                break;
+            }
+            case SET_COUNTDOWN:
+            case SET_COUNTDOWN_WARN:
+                ui.setCountdown(readVarint(in, end), opcode == SET_COUNTDOWN_WARN);
+                break;
+            case SET_ELAPSED:
+                ui.setElapsed(readVarint(in, end));
+                break;
+            case SET_FREEZE: {
+                int player = argument(in, end);
+                long zigzag = readVarint(in, end);
+                ui.setFreeze(player, (zigzag >>> 1) ^ -(zigzag & 1));
+                break;
+            }
+            case SET_SCORE: {
+                int player = argument(in, end);
+                ui.setScore(player, argument(in, end));
+                break;
+            }
+            case ANNOUNCE_WINNER: {
+                int[] players = new int[argument(in, end)];
+                for (int i = 0; i < players.length; ++i)
+                    players[i] = argument(in, end);
+                ui.announceWinner(players);
+                break;
+            }
+            case DISPOSE:
+                ui.dispose();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown event " + opcode);
+        }
+        ++events;
+    }
+
+    private static int argument(ByteBuffer in, int end) {
+        long value = readVarint(in, end);
+        if (value < 0 || value > Integer.MAX_VALUE) throw new IllegalArgumentException("argument out of range: " + value);
+        return (int) value;
+    }
+
+    /**
+     * @return - true iff the buffer holds a whole varint from its position.
+     */
+    private static boolean hasVarint(ByteBuffer in) {
+        for (int i = in.position(); i < in.limit(); ++i)
+            if (in.get(i) >= 0) return true;
+        return false;
+    }
+
+    /**
+     * Reads a varint that ends before a limit.
+     *
+     * @throws IllegalArgumentException - if it does not.
+     */
+    static long readVarint(ByteBuffer in, int limit) {
+        long value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+            if (in.position() >= limit) throw new IllegalArgumentException("truncated event");
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+}
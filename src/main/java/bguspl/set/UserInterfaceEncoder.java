@@ -0,0 +1,168 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * A UserInterface that encodes the events it is given in a compact binary form, for remote displays (see
+ * UserInterfaceNetwork) and recordings; UserInterfaceDecoder replays the encoded events onto any other UserInterface.
+ * The events are grouped in frames: takeFrame() returns the events since the previous frame as one frame, which is
+ * the length of its events in bytes followed by the events. An event is an opcode byte followed by its arguments as
+ * unsigned varints (7 bits per byte, low bits first, the high bit set on all bytes but the last); times that may be
+ * negative are zigzag encoded. A slot, card or player id takes a single byte for up to 128 ids, so e.g. placing a card
+ * takes 3 bytes.
+ * The events may come from any number of threads; a frame holds them in the order they were encoded.
+ */
+public class UserInterfaceEncoder implements UserInterface {
+
+    static final byte PLACE_CARD = 1; // card, slot
+    static final byte REMOVE_CARD = 2; // slot
+    static final byte PLACE_TOKEN = 3; // player, slot
+    static final byte REMOVE_TOKENS = 4;
+    static final byte REMOVE_SLOT_TOKENS = 5; // slot
+    static final byte REMOVE_TOKEN = 6; // player, slot
+    static final byte SET_COUNTDOWN = 7; // millies
+    static final byte SET_COUNTDOWN_WARN = 8; // millies
+    static final byte SET_ELAPSED = 9; // millies
+    static final byte SET_FREEZE = 10; // player, millies (zigzag)
+    static final byte SET_SCORE = 11; // player, score
+    static final byte ANNOUNCE_WINNER = 12; // count, players
+    static final byte DISPOSE = 13;
+
+    /**
+     * The maximal length of a varint (of a long).
+     */
+    static final int MAX_VARINT_BYTES = 10;
+
+    private byte[] events = new byte[256];
+    private int length;
+
+    /**
+     * @return - true iff there are no events that were not taken in a frame yet.
+     */
+    public synchronized boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @return - the events since the previous frame as a frame, or null if there are none.
+     */
+    public synchronized byte[] takeFrame() {
+        if (length == 0) return null;
+        byte[] frame = new byte[varintLength(length) + length];
+        int position = writeVarint(frame, 0, length);
+        System.arraycopy(events, 0, frame, position, length);
+        length = 0;
+        return frame;
+    }
+
+    /**
+     * @return - the number of bytes of a value as a varint.
+     */
+    static int varintLength(long value) {
+        int bytes = 1;
+        for (; (value & ~0x7FL) != 0; value >>>= 7) ++bytes;
+        return bytes;
+    }
+
+    /**
+     * Writes a value as a varint to a buffer (with room for it).
+     *
+     * @return - the position after it.
+     */
+    static int writeVarint(byte[] buffer, int position, long value) {
+        for (; (value & ~0x7FL) != 0; value >>>= 7)
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Makes room for an event of up to args varints.
+     */
+    private void ensure(int args) {
+        int needed = length + 1 + args * MAX_VARINT_BYTES;
+        if (needed > events.length) events = Arrays.copyOf(events, Math.max(needed, events.length * 2));
+    }
+
+    private void event(byte opcode) {
+        ensure(0);
+        events[length++] = opcode;
+    }
+
+    private void event(byte opcode, long first) {
+        ensure(1);
+        events[length++] = opcode;
+        length = writeVarint(events, length, first);
+    }
+
+    private void event(byte opcode, long first, long second) {
+        ensure(2);
+        events[length++] = opcode;
+        length = writeVarint(events, length, first);
+        length = writeVarint(events, length, second);
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        event(PLACE_CARD, card, slot);
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        event(REMOVE_CARD, slot);
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        event(PLACE_TOKEN, player, slot);
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        event(REMOVE_TOKENS);
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        event(REMOVE_SLOT_TOKENS, slot);
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        event(REMOVE_TOKEN, player, slot);
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        event(warn ? SET_COUNTDOWN_WARN : SET_COUNTDOWN, Math.max(0, millies));
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        event(SET_ELAPSED, Math.max(0, millies));
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        event(SET_FREEZE, player, (millies << 1) ^ (millies >> 63));
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        event(SET_SCORE, player, score);
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        ensure(players.length + 1);
+        events[length++] = ANNOUNCE_WINNER;
+        length = writeVarint(events, length, players.length);
+        for (int player : players)
+            length = writeVarint(events, length, player);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        event(DISPOSE);
+    }
+}
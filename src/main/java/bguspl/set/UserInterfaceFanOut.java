@@ -0,0 +1,356 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import static bguspl.set.UserInterfaceEncoder.*;
+
+/**
+ * A UserInterface that passes its events on to a user interface (e.g. the screen), and copies them to spectators
+ * (replay screens, dashboards, recordings) without slowing down the threads of the game.
+ * The events are published to a bounded broadcast ring buffer of preallocated slots, which every subscriber reads on a
+ * thread of its own, at its own pace. Like AsyncLogHandler, a game thread claims a slot with a ticket from a sequence
+ * counter and writes the event into it, so publishing takes no lock and allocates nothing. The game's threads never
+ * wait for a subscriber: the buffer is overwritten round after round, and a subscriber that falls a whole buffer
+ * behind either skips the events it missed (and goes on from the oldest one it can still read) or is dropped, as chosen
+ * when it subscribes. An idle subscriber parks until the next event is published.
+ * A subscriber gets the events published since it subscribed, and its thread ends after the dispose() event.
+ */
+public class UserInterfaceFanOut implements UserInterface {
+
+    /**
+     * What a subscriber does when it falls a whole buffer behind.
+     */
+    public enum Overrun {
+        SKIP, DROP
+    }
+
+    /**
+     * The words of a slot in the ring: its version, the opcode (see UserInterfaceEncoder) and first argument of its
+     * event, and the second argument. The version of the slot of event t is writing(t) while the event is written and
+     * published(t) once it can be read, so a subscriber knows which event a slot holds and that it read it whole.
+     */
+    private static final int VERSION = 0, HEAD = 1, SECOND = 2, STRIDE = 3;
+
+    private static long writing(long ticket) {
+        return 2 * ticket + 1;
+    }
+
+    private static long published(long ticket) {
+        return 2 * ticket + 2;
+    }
+
+    /**
+     * A subscriber, reading the events on a thread of its own.
+     */
+    public final class Subscription implements Closeable {
+
+        private final String name;
+        private final UserInterface ui;
+        private final Overrun overrun;
+        private final Thread thread;
+
+        /**
+         * The ticket of the next event to read.
+         */
+        private long next;
+
+        /**
+         * The number of events replayed and skipped (written by the subscriber's thread only).
+         */
+        private volatile long events;
+        private volatile long skipped;
+
+        private volatile boolean dropped;
+        private volatile boolean closed;
+
+        /**
+         * True while the subscriber's thread is (about to be) parked for the next event (see wakeUp()).
+         */
+        private volatile boolean sleeping;
+
+        private Subscription(String name, UserInterface ui, Overrun overrun, long next) {
+            this.name = name;
+            this.ui = ui;
+            this.overrun = overrun;
+            this.next = next;
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+        }
+
+        public long events() {
+            return events;
+        }
+
+        public long skipped() {
+            return skipped;
+        }
+
+        /**
+         * @return - true iff the subscriber was dropped for falling behind (or for failing to flush).
+         */
+        public boolean isDropped() {
+            return dropped;
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    int base = ((int) next & mask) * STRIDE;
+                    long version = ring.get(base + VERSION);
+                    if (version == published(next)) {
+                        long head = ring.get(base + HEAD);
+                        long second = ring.get(base + SECOND);
+                        byte opcode = (byte) (head >>> 32);
+                        int[] players = opcode == ANNOUNCE_WINNER ? winners.get((int) next & mask) : null;
+                        if (ring.get(base + VERSION) != version) continue; // overwritten while read: lapped
+                        replay(ui, opcode, (int) head, second, players);
+                        ++next;
+                        ++events;
+                        if (opcode == DISPOSE) {
+                            flush();
+                            return;
+                        }
+                    } else if (version < writing(next)) { // nothing new
+                        if (!flush() || closed) return;
+                        idle(base, version);
+                    } else if (version == writing(next)) { // being written
+                        Thread.yield();
+                    } else { // the buffer wrapped around past the next event
+                        long newest = (version - 1) / 2;
+                        if (overrun == Overrun.DROP) {
+                            drop("fell " + (newest - next) + " events behind");
+                            return;
+                        }
+                        long oldest = Math.max(next + 1, newest - mask);
+                        skipped += oldest - next;
+                        next = oldest;
+                    }
+                }
+            } finally {
+                subscriptions.remove(this);
+            }
+        }
+
+        /**
+         * Parks until the slot of the next event changes (or the subscription is closed).
+         */
+        private void idle(int base, long version) {
+            sleeping = true;
+            sleepers.incrementAndGet();
+            // a publisher that writes the slot after this sees a sleeper and unparks this thread, one that wrote it
+            // before is seen here (both sides write a volatile and then read the other's)
+            if (ring.get(base + VERSION) == version && !closed) LockSupport.park(this);
+            sleepers.decrementAndGet();
+            sleeping = false;
+        }
+
+        /**
+         * Flushes the subscriber's user interface, if it is Flushable (e.g. a recording), once it has caught up.
+         *
+         * @return - false iff it failed (and the subscriber was dropped).
+         */
+        private boolean flush() {
+            if (!(ui instanceof Flushable)) return true;
+            try {
+                ((Flushable) ui).flush();
+                return true;
+            } catch (IOException e) {
+                drop("cannot flush: " + e);
+                return false;
+            }
+        }
+
+        private void drop(String reason) {
+            dropped = true;
+            logger.severe("dropping spectator " + name + ": " + reason);
+        }
+
+        /**
+         * Stops reading the events once the subscriber has caught up, and waits for its thread to end.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void replay(UserInterface ui, byte opcode, int first, long second, int[] players) {
+        switch (opcode) {
+            case PLACE_CARD: ui.placeCard(first, (int) second); break;
+            case REMOVE_CARD: ui.removeCard(first); break;
+            case PLACE_TOKEN: ui.placeToken(first, (int) second); break;
+            case REMOVE_TOKENS: ui.removeTokens(); break;
+            case REMOVE_SLOT_TOKENS: ui.removeTokens(first); break;
+            case REMOVE_TOKEN: ui.removeToken(first, (int) second); break;
+            case SET_COUNTDOWN: ui.setCountdown(second, false); break;
+            case SET_COUNTDOWN_WARN: ui.setCountdown(second, true); break;
+            case SET_ELAPSED: ui.setElapsed(second); break;
+            case SET_FREEZE: ui.setFreeze(first, second); break;
+            case SET_SCORE: ui.setScore(first, (int) second); break;
+            case ANNOUNCE_WINNER: ui.announceWinner(players.clone()); break;
+            case DISPOSE: ui.dispose(); break;
+        }
+    }
+
+    private final Logger logger;
+    private final UserInterface ui;
+
+    /**
+     * The slots of the ring (STRIDE words each): event t is in slot t & mask, until it is overwritten. The players of
+     * an ANNOUNCE_WINNER event are in winners (the only event that is not a few numbers).
+     */
+    private final AtomicLongArray ring;
+    private final AtomicReferenceArray<int[]> winners;
+    private final int size;
+    private final int mask;
+
+    /**
+     * The number of tickets handed out to publishers.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * The number of subscribers parked (or about to park) for the next event.
+     */
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    /**
+     * @param capacity - the number of events a subscriber may fall behind (rounded up to a power of 2).
+     * @param ui       - the user interface to pass the events on to (null for none).
+     */
+    public UserInterfaceFanOut(Logger logger, int capacity, UserInterface ui) {
+        this.logger = logger;
+        this.ui = ui;
+        size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        mask = size - 1;
+        ring = new AtomicLongArray(size * STRIDE);
+        winners = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Starts a subscriber's thread.
+     *
+     * @param name    - the name of the subscriber (and its thread).
+     * @param ui      - the user interface to replay the events onto (from the subscriber's thread).
+     * @param overrun - what to do when the subscriber falls a whole buffer behind.
+     */
+    public Subscription subscribe(String name, UserInterface ui, Overrun overrun) {
+        Subscription subscription = new Subscription(name, ui, overrun, tail.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Writes an event to the next slot of the ring and wakes up the idle subscribers.
+     */
+    private void publish(byte opcode, int first, long second, int[] players) {
+        long ticket = tail.getAndIncrement();
+        int index = (int) ticket & mask;
+        int base = index * STRIDE;
+        // the publisher of the previous round of the slot is normally long done, wait for it if it is not
+        long previous = ticket >= size ? published(ticket - size) : 0;
+        while (!ring.compareAndSet(base + VERSION, previous, writing(ticket)))
+            Thread.yield();
+        ring.lazySet(base + HEAD, (long) opcode << 32 | (first & 0xFFFFFFFFL));
+        ring.lazySet(base + SECOND, second);
+        winners.lazySet(index, players);
+        ring.set(base + VERSION, published(ticket));
+        if (sleepers.get() > 0) wakeUp();
+    }
+
+    private void wakeUp() {
+        for (Subscription subscription : subscriptions)
+            if (subscription.sleeping) LockSupport.unpark(subscription.thread);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ui != null) ui.placeCard(card, slot);
+        publish(PLACE_CARD, card, slot, null);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ui != null) ui.removeCard(slot);
+        publish(REMOVE_CARD, slot, 0, null);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ui != null) ui.placeToken(player, slot);
+        publish(PLACE_TOKEN, player, slot, null);
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ui != null) ui.removeTokens();
+        publish(REMOVE_TOKENS, 0, 0, null);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ui != null) ui.removeTokens(slot);
+        publish(REMOVE_SLOT_TOKENS, slot, 0, null);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ui != null) ui.removeToken(player, slot);
+        publish(REMOVE_TOKEN, player, slot, null);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ui != null) ui.setCountdown(millies, warn);
+        publish(warn ? SET_COUNTDOWN_WARN : SET_COUNTDOWN, 0, millies, null);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+        publish(SET_ELAPSED, 0, millies, null);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ui != null) ui.setFreeze(player, millies);
+        publish(SET_FREEZE, player, millies, null);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ui != null) ui.setScore(player, score);
+        publish(SET_SCORE, player, score, null);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ui != null) ui.announceWinner(players);
+        publish(ANNOUNCE_WINNER, 0, 0, players.clone());
+    }
+
+    @Override
+    public void dispose() {
+        if (ui != null) ui.dispose();
+        publish(DISPOSE, 0, 0, null);
+    }
+}
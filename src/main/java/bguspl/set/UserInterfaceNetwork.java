@@ -0,0 +1,235 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A UserInterface that serializes the events of the game for the remote clients of a GameServer. The events are
+ * encoded by a UserInterfaceEncoder, whose frames the server's thread takes and sends to every connection, and they
+ * update a model of the display (cards, tokens, scores, freezes and timer) from which a new connection gets a snapshot.
+ * A connection starts with a welcome message: the WELCOME byte followed by the player of the connection (-1 for a
+ * spectator), the rows, the columns and the number of players, as big-endian ints. Then come frames of events (see
+ * UserInterfaceEncoder), the first of them the snapshot.
+ * All the events set a part of the display, so applying some of them twice (e.g. after a snapshot that includes them)
+ * leaves the display as it is.
+ */
+public class UserInterfaceNetwork implements UserInterface {
+
+    public static final byte WELCOME = 0;
+    public static final int WELCOME_BYTES = 1 + 4 * Integer.BYTES;
+
+    private static final int NONE = -1;
+
+    private final Config config;
+
+    /**
+     * Called (outside the lock) when there are events to send.
+     */
+    private final Runnable pendingReady;
+
+    /**
+     * The events not sent yet.
+     */
+    private final UserInterfaceEncoder pending = new UserInterfaceEncoder();
+
+    /**
+     * The model of the display: the card in every slot (NONE for none), the players' tokens on every slot (a bitmask
+     * of tokenWords words per slot), the players' scores and freeze times and the timer.
+     */
+    private final int[] cards;
+    private final long[] tokens;
+    private final int tokenWords;
+    private final int[] scores;
+    private final long[] freezes;
+    private boolean elapsed;
+    private boolean timerSet;
+    private long timerMillies;
+    private boolean timerWarn;
+
+    /**
+     * @param config       - the game configuration.
+     * @param pendingReady - called when there are events to send (from the thread of the event).
+     */
+    public UserInterfaceNetwork(Config config, Runnable pendingReady) {
+        this.config = config;
+        this.pendingReady = pendingReady;
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, NONE);
+        tokenWords = (config.players + Long.SIZE - 1) / Long.SIZE;
+        tokens = new long[config.tableSize * tokenWords];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+    }
+
+    /**
+     * @return - the pending events as a frame, or null if there are none.
+     */
+    synchronized byte[] drain() {
+        return pending.takeFrame();
+    }
+
+    /**
+     * @param player - the player of the connection (-1 for a spectator).
+     * @return - the welcome message of a new connection followed by the current state of the display as a frame.
+     */
+    synchronized byte[] snapshot(int player) {
+        UserInterfaceEncoder snapshot = new UserInterfaceEncoder();
+        for (int slot = 0; slot < cards.length; ++slot) {
+            if (cards[slot] == NONE) continue;
+            snapshot.placeCard(cards[slot], slot);
+            for (int p = 0; p < config.players; ++p)
+                if ((tokens[slot * tokenWords + p / Long.SIZE] & (1L << p)) != 0) snapshot.placeToken(p, slot);
+        }
+        for (int p = 0; p < config.players; ++p) {
+            if (scores[p] != 0) snapshot.setScore(p, scores[p]);
+            if (freezes[p] > 0) snapshot.setFreeze(p, freezes[p]);
+        }
+        if (timerSet && elapsed) snapshot.setElapsed(timerMillies);
+        else if (timerSet) snapshot.setCountdown(timerMillies, timerWarn);
+        byte[] frame = snapshot.takeFrame();
+
+        ByteBuffer message = ByteBuffer.allocate(WELCOME_BYTES + (frame == null ? 0 : frame.length));
+        message.put(WELCOME).putInt(player).putInt(config.rows).putInt(config.columns).putInt(config.players);
+        if (frame != null) message.put(frame);
+        return message.array();
+    }
+
+    private void ready(boolean wasEmpty) {
+        if (wasEmpty) pendingReady.run();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        boolean wasEmpty;
+        synchronized (this) {
+            cards[slot] = card;
+            wasEmpty = pending.isEmpty();
+            pending.placeCard(card, slot);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        boolean wasEmpty;
+        synchronized (this) {
+            cards[slot] = NONE;
+            wasEmpty = pending.isEmpty();
+            pending.removeCard(slot);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        boolean wasEmpty;
+        synchronized (this) {
+            tokens[slot * tokenWords + player / Long.SIZE] |= 1L << player;
+            wasEmpty = pending.isEmpty();
+            pending.placeToken(player, slot);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void removeTokens() {
+        boolean wasEmpty;
+        synchronized (this) {
+            Arrays.fill(tokens, 0);
+            wasEmpty = pending.isEmpty();
+            pending.removeTokens();
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        boolean wasEmpty;
+        synchronized (this) {
+            Arrays.fill(tokens, slot * tokenWords, (slot + 1) * tokenWords, 0);
+            wasEmpty = pending.isEmpty();
+            pending.removeTokens(slot);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        boolean wasEmpty;
+        synchronized (this) {
+            tokens[slot * tokenWords + player / Long.SIZE] &= ~(1L << player);
+            wasEmpty = pending.isEmpty();
+            pending.removeToken(player, slot);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        boolean wasEmpty;
+        synchronized (this) {
+            timerSet = true;
+            elapsed = false;
+            timerMillies = millies;
+            timerWarn = warn;
+            wasEmpty = pending.isEmpty();
+            pending.setCountdown(millies, warn);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        boolean wasEmpty;
+        synchronized (this) {
+            timerSet = true;
+            elapsed = true;
+            timerMillies = millies;
+            wasEmpty = pending.isEmpty();
+            pending.setElapsed(millies);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        boolean wasEmpty;
+        synchronized (this) {
+            freezes[player] = millies;
+            wasEmpty = pending.isEmpty();
+            pending.setFreeze(player, millies);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        boolean wasEmpty;
+        synchronized (this) {
+            scores[player] = score;
+            wasEmpty = pending.isEmpty();
+            pending.setScore(player, score);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        boolean wasEmpty;
+        synchronized (this) {
+            wasEmpty = pending.isEmpty();
+            pending.announceWinner(players);
+        }
+        ready(wasEmpty);
+    }
+
+    @Override
+    public void dispose() {
+        boolean wasEmpty;
+        synchronized (this) {
+            wasEmpty = pending.isEmpty();
+            pending.dispose();
+        }
+        ready(wasEmpty);
+    }
+}
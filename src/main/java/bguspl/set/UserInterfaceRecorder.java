@@ -0,0 +1,39 @@
+package bguspl.set;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A UserInterface that records the display to a stream, as the frames of a UserInterfaceEncoder (so a
+ * UserInterfaceDecoder can play them back onto any other UserInterface). Every flush() writes the events since the
+ * previous one as a frame; the first flush() after dispose() closes the stream.
+ * Meant to be a subscriber of a UserInterfaceFanOut, which flushes it whenever it catches up.
+ */
+public class UserInterfaceRecorder extends UserInterfaceEncoder implements Flushable {
+
+    private final OutputStream out;
+    private volatile boolean disposed;
+
+    /**
+     * @param out - the stream to write the frames to (closed after the dispose() event).
+     */
+    public UserInterfaceRecorder(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        boolean close = disposed;
+        byte[] frame = takeFrame();
+        if (frame != null) out.write(frame);
+        if (close) out.close();
+        else out.flush();
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        disposed = true;
+    }
+}
@@ -4,10 +4,13 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -15,6 +18,9 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The game threads never touch the Swing components: they update a pending model (the cards and tokens per slot, the
+ * score and freeze per player and the timer), mark what changed dirty and request a frame of the UpdateBatcher, which
+ * applies the dirty slots and players on the event dispatch thread and repaints only their cells.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
@@ -23,6 +29,34 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final CardImages deck;
+
+    private static final int NONE = -1;
+
+    /**
+     * The timer modes, in the 2 low bits of the pending timer (the time, in milliseconds, is in the rest).
+     */
+    private static final int COUNTDOWN = 0, COUNTDOWN_WARN = 1, ELAPSED = 2;
+
+    /**
+     * The pending model: the card in every slot (NONE for none), the players' tokens on every slot (a bitmask of
+     * tokenWords words per slot), the players' scores and freeze times and the timer.
+     */
+    private final AtomicIntegerArray cards;
+    private final AtomicLongArray tokens;
+    private final int tokenWords;
+    private final AtomicIntegerArray scores;
+    private final AtomicLongArray freezes;
+    private final AtomicLong timer = new AtomicLong();
+
+    /**
+     * What changed in the pending model since the previous frame.
+     */
+    private final UpdateBatcher.DirtySet dirtySlots;
+    private final UpdateBatcher.DirtySet dirtyPlayers;
+    private final AtomicBoolean dirtyTimer = new AtomicBoolean();
+
+    private final UpdateBatcher batcher;
 
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
@@ -31,6 +65,18 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
 
         this.config = config;
+        deck = new CardImages(logger, config);
+        cards = new AtomicIntegerArray(config.tableSize);
+        for (int slot = 0; slot < config.tableSize; ++slot)
+            cards.set(slot, NONE);
+        tokenWords = (config.players + Long.SIZE - 1) / Long.SIZE;
+        tokens = new AtomicLongArray(config.tableSize * tokenWords);
+        scores = new AtomicIntegerArray(config.players);
+        freezes = new AtomicLongArray(config.players);
+        dirtySlots = new UpdateBatcher.DirtySet(config.tableSize);
+        dirtyPlayers = new UpdateBatcher.DirtySet(config.players);
+        batcher = new UpdateBatcher(config.maxFrameRate, this::frame);
+
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -67,6 +113,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         addWindowListener(new WindowManager());
 
         EventQueue.invokeLater(() -> setVisible(true));
+        deck.start(card -> EventQueue.invokeLater(() -> gamePanel.decoded(card)));
+    }
+
+    /**
+     * Applies the changes of the pending model to the components (on the event dispatch thread).
+     */
+    private void frame() {
+        dirtySlots.drain(gamePanel::update);
+        dirtyPlayers.drain(playersPanel::update);
+        if (dirtyTimer.getAndSet(false)) timerPanel.update(timer.get());
     }
 
     private class TimerPanel extends JPanel {
@@ -90,52 +146,48 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             add(timerField);
         }
 
-        private void setCountdown(long millies, boolean warn) {
-            timerField.setText(generateTime(millies, warn));
-            timerField.setForeground(warn ? Color.RED : Color.BLACK);
-        }
-
-        private void setElapsed(long millies) {
-            timerField.setText("Elapsed time: " + millies / 1000);
+        private void update(long timer) {
+            long millies = timer >> 2;
+            if ((timer & 3) == ELAPSED) {
+                timerField.setText("Elapsed time: " + millies / 1000);
+            } else {
+                boolean warn = (timer & 3) == COUNTDOWN_WARN;
+                timerField.setText(generateTime(millies, warn));
+                timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            }
         }
     }
 
     private class GamePanel extends JLayeredPane {
 
         private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
-        private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        /**
+         * The images of the cards (and of the empty card) scaled to the cell size, in a format compatible with the
+         * display, created when first drawn (so every repaint is a plain copy).
+         */
+        private final Image[] scaledDeck;
+        private Image scaledEmptyCard;
+
+        /**
+         * The card shown in every slot (NONE for none).
+         */
+        private final int[] grid;
+        private final JLabel[][] tokenText;
 
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
+            // the card images are decoded in the background (see CardImages), only the empty card is needed right away
+            emptyCard = CardImages.decode("cards/empty_card.png");
 
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
-
-            grid = new Image[config.rows][config.columns];
+            scaledDeck = new Image[config.deckSize];
+            grid = new int[config.tableSize];
+            Arrays.fill(grid, NONE);
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
                     tokenText[row][column].setVerticalAlignment(JLabel.TOP);
@@ -148,67 +200,82 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void placeCard(int slot, int card) {
+        /**
+         * Shows the pending card and tokens of a slot and repaints its cell.
+         */
+        private void update(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            grid[slot] = cards.get(slot);
+            tokenText[row][column].setText(generatePlayersTokenText(slot));
+            repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
-        private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+        /**
+         * Repaints the cells showing a card whose image was just decoded (in place of the empty card).
+         */
+        private void decoded(int card) {
+            if (scaledDeck[card] != null) return;
+            for (int slot = 0; slot < grid.length; ++slot)
+                if (grid[slot] == card)
+                    repaint(slot % config.columns * config.cellWidth, slot / config.columns * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
-        }
-
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        private String generatePlayersTokenText(int slot) {
+            StringBuilder text = new StringBuilder();
+            for (int player = 0; player < config.players; player++) {
+                if ((tokens.get(slot * tokenWords + player / Long.SIZE) & (1L << player)) != 0) {
+                    if (text.length() > 0) text.append(", ");
+                    text.append(config.playerNames[player]);
+                }
             }
+            return text.toString();
         }
 
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * @return - the image of a card (or of the empty card for NONE) scaled to the cell size. The empty card stands
+         *           in for a card whose image is not decoded yet, until decoded() repaints its cell, and for a card whose
+         *           image cannot be decoded.
+         */
+        private Image scaledImage(int card) {
+            if (card != NONE && scaledDeck[card] == null) {
+                Image image = deck.peek(card);
+                if (image != null) scaledDeck[card] = scale(image);
+            }
+            if (card != NONE && scaledDeck[card] != null) return scaledDeck[card];
+            if (scaledEmptyCard == null) scaledEmptyCard = scale(emptyCard);
+            return scaledEmptyCard;
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+        private Image scale(Image image) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            BufferedImage scaled = gc != null
+                    ? gc.createCompatibleImage(config.cellWidth, config.cellHeight, Transparency.TRANSLUCENT)
+                    : new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, config.cellWidth, config.cellHeight, null);
+            } finally {
+                g.dispose();
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            return scaled;
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // draw the card images of the cells in the area to repaint only
+            Rectangle clip = g.getClipBounds();
+            int firstRow = 0, lastRow = config.rows - 1, firstColumn = 0, lastColumn = config.columns - 1;
+            if (clip != null) {
+                firstRow = Math.max(firstRow, clip.y / config.cellHeight);
+                lastRow = Math.min(lastRow, (clip.y + clip.height - 1) / config.cellHeight);
+                firstColumn = Math.max(firstColumn, clip.x / config.cellWidth);
+                lastColumn = Math.min(lastColumn, (clip.x + clip.width - 1) / config.cellWidth);
+            }
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++)
+                    g.drawImage(scaledImage(grid[row * config.columns + column]), column * config.cellWidth, row * config.cellHeight, null);
         }
     }
 
@@ -235,7 +302,11 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void setFreeze(int player, long millies) {
+        /**
+         * Shows the pending score and freeze time of a player.
+         */
+        private void update(int player) {
+            long millies = freezes.get(player);
             if (millies > 0) {
                 this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
                 this.playersTable[0][player].setForeground(Color.RED);
@@ -243,10 +314,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
                 this.playersTable[0][player].setText(config.playerNames[player]);
                 this.playersTable[0][player].setForeground(Color.BLACK);
             }
-        }
-
-        private void setScore(int player, int score) {
-            playersTable[1][player].setText(Integer.toString(score));
+            playersTable[1][player].setText(Integer.toString(scores.get(player)));
         }
     }
 
@@ -276,59 +344,92 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        cards.set(slot, card);
+        slotChanged(slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        cards.set(slot, NONE);
+        slotChanged(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        int word = slot * tokenWords + player / Long.SIZE;
+        long bit = 1L << player;
+        for (long bits = tokens.get(word); !tokens.compareAndSet(word, bits, bits | bit); bits = tokens.get(word)) ;
+        slotChanged(slot);
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        for (int word = 0; word < tokens.length(); ++word)
+            tokens.set(word, 0);
+        dirtySlots.markAll();
+        batcher.request();
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        for (int word = slot * tokenWords; word < (slot + 1) * tokenWords; ++word)
+            tokens.set(word, 0);
+        slotChanged(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        int word = slot * tokenWords + player / Long.SIZE;
+        long bit = 1L << player;
+        for (long bits = tokens.get(word); !tokens.compareAndSet(word, bits, bits & ~bit); bits = tokens.get(word)) ;
+        slotChanged(slot);
+    }
+
+    private void slotChanged(int slot) {
+        dirtySlots.mark(slot);
+        batcher.request();
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        timerChanged(millies << 2 | (warn ? COUNTDOWN_WARN : COUNTDOWN));
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        timerChanged(millies << 2 | ELAPSED);
+    }
+
+    private void timerChanged(long value) {
+        timer.set(value);
+        dirtyTimer.set(true);
+        batcher.request();
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        freezes.set(player, millies);
+        playerChanged(player);
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        scores.set(player, score);
+        playerChanged(player);
+    }
+
+    private void playerChanged(int player) {
+        dirtyPlayers.mark(player);
+        batcher.request();
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        EventQueue.invokeLater(() -> {
+            playersPanel.setVisible(false);
+            winnerPanel.announceWinner(players);
+            winnerPanel.setVisible(true);
+        });
     }
 
     @Override
@@ -1,5 +1,7 @@
 package bguspl.set;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -31,6 +33,42 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Computes the card that completes a partial set of length cards (one card less than a set) to a legal set: per
+     * feature, the partial set must either have a single value (which the completion repeats) or all different values
+     * (and the completion takes the one value left).
+     * A set has as many cards as a feature has values (config.featureSize), so the card ids of a partial set one card
+     * short of a set are in base length + 1: for any other length there is no completion.
+     *
+     * @param cards  - an array of distinct card ids (only the first length entries are used).
+     * @param length - the number of cards in the partial set (at least 2, and config.featureSize - 1).
+     * @return - the id of the completing card, or -1 if there is none.
+     */
+    default int completeSet(int[] cards, int length) {
+        if (length < 2 || cards.length < length) return -1;
+        int[][] features = cardsToFeatures(Arrays.copyOf(cards, length));
+        if (features.length < length) return -1;
+
+        int card = 0;
+        for (int i = 0; i < features[0].length; ++i) {
+            boolean[] seen = new boolean[length + 1];
+            int distinct = 0;
+            for (int[] cardFeatures : features)
+                if (cardFeatures[i] < 0 || cardFeatures[i] > length) return -1; // not a value of a set of length + 1 cards
+                else if (!seen[cardFeatures[i]]) {
+                    seen[cardFeatures[i]] = true;
+                    ++distinct;
+                }
+
+            int value = 0;
+            if (distinct == 1) value = features[0][i];
+            else if (distinct == length) while (seen[value]) ++value;
+            else return -1;
+            card = card * (length + 1) + value;
+        }
+        return card;
+    }
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +78,59 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds up to count sets in the first length cards of the given array, without boxing the card ids.
+     * The card ids of each set found are written (sorted) consecutively into result, i.e. set i occupies
+     * result[i * setSize .. (i + 1) * setSize - 1] where setSize is config.featureSize.
+     *
+     * @param cards  - an array of distinct card ids (only the first length entries are used).
+     * @param length - the number of cards in the array.
+     * @param count  - the maximum number of sets to find.
+     * @param result - the buffer to write the sets to (at least count * setSize long), or null to only count them.
+     * @return - the number of sets found (at most count).
+     */
+    default int findSets(int[] cards, int length, int count, int[] result) {
+        // a list view of the cards, not a copy (the boxed card ids of a deck of up to 128 cards are cached)
+        List<Integer> deck = new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                if (index >= length) throw new IndexOutOfBoundsException("Index: " + index);
+                return cards[index];
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
+        int found = 0;
+        for (int[] set : findSets(deck, count)) {
+            if (result != null) System.arraycopy(set, 0, result, found * set.length, set.length);
+            ++found;
+        }
+        return found;
+    }
+
+    /**
+     * Finds up to count sets in a set of cards given as a bitset (card c is included iff bit c % 64 of
+     * cardSet[c / 64] is on). The sets found are written to result as in findSets(int[], int, int, int[]).
+     *
+     * @param cardSet - the bitset of the cards.
+     * @param count   - the maximum number of sets to find.
+     * @param result  - the buffer to write the sets to, or null to only count them.
+     * @return - the number of sets found (at most count).
+     */
+    default int findSets(long[] cardSet, int count, int[] result) {
+        int length = 0;
+        for (long word : cardSet)
+            length += Long.bitCount(word);
+        int[] cards = new int[length];
+        for (int i = 0, word = 0; word < cardSet.length; ++word)
+            for (long bits = cardSet[word]; bits != 0; bits &= bits - 1)
+                cards[i++] = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        return findSets(cards, length, count, result);
+    }
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -1,7 +1,7 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
@@ -13,8 +13,78 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The metrics to record the duration of the searches for sets into.
+     */
+    private final Metrics metrics;
+
+    /**
+     * The features of every card in the deck (features[card][feature]), computed once.
+     */
+    private final int[][] features;
+
+    /**
+     * One-hot encoding of every card in the deck: feature i of the card occupies bits
+     * [i * featureSize, (i + 1) * featureSize) and has the bit of its value set. Null if the encoding does not
+     * fit in a long (i.e. featureCount * featureSize > 64).
+     */
+    private final long[] packed;
+
+    /**
+     * The mask of a single feature in the one-hot encoding (featureSize low bits).
+     */
+    private final long featureMask;
+
+    /**
+     * One search for sets in every TIMING_SAMPLE (per thread) is timed, and its duration recorded for all of them (so
+     * the searches do not pay for two clock reads each). The searches themselves are counted exactly.
+     */
+    private static final int TIMING_SAMPLE = 16;
+
+    /**
+     * Per thread working buffers of findSets (so that searching does not allocate).
+     */
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private class Scratch {
+        final int[] combination = new int[Math.max(config.featureSize, 1)];
+        final int[] set = new int[config.featureSize];
+        final long[] prefix = new long[Math.max(config.featureSize, 1)];
+        final int[] max = new int[Math.max(config.featureSize, 1)];
+        final long[] members = new long[(config.deckSize + Long.SIZE - 1) / Long.SIZE];
+        final int[] cards = new int[config.deckSize]; // the cards of a search given as a bitset or a list
+        int searches;
+
+        /**
+         * @return - true iff the current search is timed (see TIMING_SAMPLE).
+         */
+        boolean timed() {
+            return searches++ % TIMING_SAMPLE == 0;
+        }
+    }
+
     public UtilImpl(Config config) {
+        this(config, new Metrics());
+    }
+
+    public UtilImpl(Config config, Metrics metrics) {
         this.config = config;
+        this.metrics = metrics;
+
+        features = new int[config.deckSize][config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card)
+            cardToFeatures(card, features[card]);
+
+        if (config.featureSize > 0 && (long) config.featureCount * config.featureSize <= Long.SIZE) {
+            featureMask = config.featureSize == Long.SIZE ? -1L : (1L << config.featureSize) - 1;
+            packed = new long[config.deckSize];
+            for (int card = 0; card < config.deckSize; ++card)
+                for (int i = 0; i < config.featureCount; ++i)
+                    packed[card] |= 1L << (i * config.featureSize + features[card][i]);
+        } else {
+            featureMask = 0;
+            packed = null;
+        }
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -26,35 +96,71 @@ public class UtilImpl implements Util {
 
     @Override
     public int[] cardToFeatures(int card) {
-        int[] features = new int[config.featureCount];
+        if (card >= 0 && card < features.length) return features[card].clone();
+        int[] features = new int[config.featureCount]; // not in the deck: decoded arithmetically
         cardToFeatures(card, features);
         return features;
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
-        int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        int[][] features = new int[cards.length][];
+        IntStream.range(0, cards.length).forEach(i -> features[i] = cardToFeatures(cards[i]));
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        if (!inDeck(cards, cards.length)) return testUnpackedSet(cardsToFeatures(cards), IntStream.range(0, cards.length).toArray());
+        return packed != null ? testPackedSet(cards) : testUnpackedSet(features, cards);
+    }
+
+    /**
+     * @return - true iff the first length cards are ids of the deck (which the precomputed tables cover; other ids are
+     *           decoded arithmetically, as in cardToFeatures).
+     */
+    private boolean inDeck(int[] cards, int length) {
+        for (int i = 0; i < length; ++i)
+            if (cards[i] < 0 || cards[i] >= features.length) return false;
+        return true;
+    }
+
+    /**
+     * Checks a set using the one-hot encoding: OR-ing the cards together leaves, per feature, one bit per distinct
+     * value. A feature is legal iff it has a single value (sameSame) or as many values as cards (butDifferent).
+     */
+    private boolean testPackedSet(int[] cards) {
+        long values = 0;
+        for (int card : cards)
+            values |= packed[card];
+
+        for (int i = 0; i < config.featureCount; ++i) {
+            int distinct = Long.bitCount((values >>> (i * config.featureSize)) & featureMask);
+            if ((distinct == 1) == (distinct == cards.length)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks a set using a features table (the precomputed one, for decks whose one-hot encoding does not fit in a long).
+     *
+     * @param features - the features of the cards, by the ids in cards.
+     */
+    private boolean testUnpackedSet(int[][] features, int[] cards) {
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                if (features[cards[0]][i] != features[cards[j]][i]) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length && butDifferent; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (features[cards[j - 1]][i] == features[cards[k]][i]) {
                         butDifferent = false;
                         break;
                     }
@@ -66,19 +172,102 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
-        LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        int[] cards = deck.size() <= config.deckSize ? scratch.get().cards : new int[deck.size()];
+        int length = 0;
+        for (int card : deck)
+            cards[length++] = card;
+        List<int[]> sets = new ArrayList<>();
+        findSets(cards, length, count, null, sets);
+        return sets;
+    }
+
+    @Override
+    public int findSets(int[] cards, int length, int count, int[] result) {
+        return findSets(cards, length, count, result, null);
+    }
+
+    @Override
+    public int findSets(long[] cardSet, int count, int[] result) {
+        if (!canComplete()) return Util.super.findSets(cardSet, count, result);
+
+        Scratch scratch = this.scratch.get();
+        metrics.findSetsCalls.increment();
+        boolean timed = scratch.timed();
+        long start = timed ? System.nanoTime() : 0;
+        int[] cards = scratch.cards;
+        int length = 0;
+        for (int word = 0; word < cardSet.length; ++word)
+            for (long bits = cardSet[word]; bits != 0; bits &= bits - 1)
+                cards[length++] = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        try {
+            return findSetsByCompletion(cards, length, cardSet, count, result, null);
+        } finally {
+            if (timed) metrics.findSets.record(System.nanoTime() - start, TIMING_SAMPLE);
+        }
+    }
+
+    /**
+     * Finds up to count sets in the first length cards and reports each one to result and/or sets (if not null).
+     */
+    private int findSets(int[] cards, int length, int count, int[] result, List<int[]> sets) {
+        Scratch scratch = this.scratch.get();
+        metrics.findSetsCalls.increment();
+        boolean timed = scratch.timed();
+        long start = timed ? System.nanoTime() : 0;
+        if (!canComplete()) try {
+            return findSetsByCombination(cards, length, count, result, sets);
+        } finally {
+            if (timed) metrics.findSets.record(System.nanoTime() - start, TIMING_SAMPLE);
+        }
+
+        long[] members = scratch.members;
+        for (int i = 0; i < length; ++i)
+            members[cards[i] / Long.SIZE] |= 1L << cards[i];
+        try {
+            return findSetsByCompletion(cards, length, members, count, result, sets);
+        } finally {
+            for (int i = 0; i < length; ++i)
+                members[cards[i] / Long.SIZE] = 0;
+            if (timed) metrics.findSets.record(System.nanoTime() - start, TIMING_SAMPLE);
+        }
+    }
+
+    /**
+     * @return - true iff sets can be found by completion (i.e. the cards are packed and a set has at least 3 cards).
+     */
+    private boolean canComplete() {
+        return packed != null && config.featureSize >= 3;
+    }
+
+    /**
+     * Reports a set found: copies its cards (sorted) to position found of result and/or adds a copy to sets.
+     */
+    private void report(int[] set, int found, int[] result, List<int[]> sets) {
+        Arrays.sort(set);
+        if (result != null) System.arraycopy(set, 0, result, found * set.length, set.length);
+        if (sets != null) sets.add(set.clone());
+    }
+
+    /**
+     * Finds sets by walking every r-combination of the cards and testing it (r being the set size).
+     */
+    private int findSetsByCombination(int[] cards, int n, int count, int[] result, List<int[]> sets) {
         int r = config.featureSize;
-        int[] combination = new int[r];
+        Scratch scratch = this.scratch.get();
+        int[] combination = scratch.combination;
+        int[] set = scratch.set;
+        int found = 0;
+        if (n < r || count <= 0) return found;
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
+        while (combination[r - 1] < n) {
+            for (int i = 0; i < r; ++i)
+                set[i] = cards[combination[i]];
+            if (testSet(set)) {
+                report(set, found, result, sets);
+                if (++found >= count) return found;
             }
 
             // generate next combination in lexicographic order
@@ -87,7 +276,87 @@ public class UtilImpl implements Util {
             combination[t]++;
             for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
-        return sets;
+        return found;
+    }
+
+    /**
+     * Finds sets by walking every (r-1)-combination of the cards and computing the single card that completes it to
+     * a legal set (if any). Each set is reported once: for the combination of its r-1 lowest card ids, i.e. when its
+     * completing card is a member with a higher id than the rest of it.
+     * This takes O(n^(r-1)) instead of O(n^r) and requires r >= 3 (a single card does not determine its completion).
+     *
+     * @param members - a bitset of the cards (see Util::findSets(long[], int, int[])).
+     */
+    private int findSetsByCompletion(int[] cards, int n, long[] members, int count, int[] result, List<int[]> sets) {
+        int r = config.featureSize;
+        Scratch scratch = this.scratch.get();
+        int[] combination = scratch.combination;
+        long[] prefix = scratch.prefix; // prefix[i] is the packed OR of the cards in combination[0..i]
+        int[] max = scratch.max; // max[i] is the highest card id in combination[0..i]
+        int[] set = scratch.set;
+        int found = 0;
+        if (n < r || count <= 0) return found;
+
+        int t = 0;
+        combination[0] = 0;
+        while (true) {
+            if (combination[t] > n - r + 1 + t) { // exhausted this position, backtrack
+                if (t == 0) return found;
+                combination[--t]++;
+                continue;
+            }
+            int card = cards[combination[t]];
+            prefix[t] = (t == 0 ? 0 : prefix[t - 1]) | packed[card];
+            max[t] = t == 0 ? card : Math.max(max[t - 1], card);
+            if (t < r - 2) { // extend the combination
+                combination[t + 1] = combination[t] + 1;
+                ++t;
+                continue;
+            }
+
+            int completion = completePackedSet(prefix[t], r - 1);
+            if (completion > max[t] && completion / Long.SIZE < members.length
+                    && (members[completion / Long.SIZE] & (1L << completion)) != 0) {
+                for (int i = 0; i < r - 1; ++i)
+                    set[i] = cards[combination[i]];
+                set[r - 1] = completion;
+                report(set, found, result, sets);
+                if (++found >= count) return found;
+            }
+            combination[t]++;
+        }
+    }
+
+    @Override
+    public int completeSet(int[] cards, int length) {
+        if (length != config.featureSize - 1) return -1; // not one card short of a set
+        if (!canComplete() || !inDeck(cards, length)) return Util.super.completeSet(cards, length);
+
+        long values = 0;
+        for (int i = 0; i < length; ++i)
+            values |= packed[cards[i]];
+        return completePackedSet(values, length);
+    }
+
+    /**
+     * Computes the card that completes a partial set to a legal set: per feature, the partial set must either have
+     * a single value (which the completion repeats) or all different values (and the completion takes the one
+     * value left).
+     *
+     * @param values - the packed OR of the cards of the partial set.
+     * @param cards  - the number of cards in the partial set (at least 2 and less than featureSize).
+     * @return - the completing card id, or -1 if there is none.
+     */
+    private int completePackedSet(long values, int cards) {
+        int card = 0;
+        for (int i = 0; i < config.featureCount; ++i) {
+            long feature = (values >>> (i * config.featureSize)) & featureMask;
+            int distinct = Long.bitCount(feature);
+            if (distinct == cards) feature = ~feature & featureMask; // all different, take the missing value
+            else if (distinct != 1) return -1; // neither all same nor all different
+            card = card * config.featureSize + Long.numberOfTrailingZeros(feature);
+        }
+        return card;
     }
 
     public void spin() {
@@ -0,0 +1,104 @@
+package bguspl.set;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the running JVM has them (Java 21 and later). The game is compiled for Java 8, so the
+ * virtual thread builder is looked up by reflection once, and callers fall back to platform threads without it.
+ */
+public final class VirtualThreads {
+
+    /**
+     * Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable) (null if unavailable).
+     */
+    private static final Method ofVirtual;
+    private static final Method name;
+    private static final Method unstarted;
+
+    /**
+     * Executors.newThreadPerTaskExecutor(ThreadFactory) (null if unavailable).
+     */
+    private static final Method perTask;
+
+    static {
+        Method of = null, n = null, u = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            of = Thread.class.getMethod("ofVirtual");
+            n = builder.getMethod("name", String.class);
+            u = builder.getMethod("unstarted", Runnable.class);
+            // a preview build may have the methods but refuse to run them
+            u.invoke(n.invoke(of.invoke(null), "probe"), (Runnable) () -> {});
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            of = n = u = null;
+        }
+        ofVirtual = of;
+        name = n;
+        unstarted = u;
+        Method p = null;
+        if (u != null) {
+            try {
+                p = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                p = null;
+            }
+        }
+        perTask = p;
+    }
+
+    private VirtualThreads() {}
+
+    /**
+     * @return - true iff the JVM supports virtual threads.
+     */
+    public static boolean supported() {
+        return unstarted != null;
+    }
+
+    /**
+     * Creates an unstarted virtual thread.
+     *
+     * @param task - the task to run on the thread.
+     * @param threadName - the name of the thread.
+     * @return - the thread, or null if virtual threads are not supported.
+     */
+    public static Thread unstarted(Runnable task, String threadName) {
+        if (!supported()) return null;
+        try {
+            return (Thread) unstarted.invoke(name.invoke(ofVirtual.invoke(null), threadName), task);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates an unstarted thread: a virtual one if asked for and supported, and a platform one otherwise.
+     *
+     * @param virtual - whether a virtual thread is preferred.
+     * @param task - the task to run on the thread.
+     * @param threadName - the name of the thread.
+     * @return - the thread.
+     */
+    public static Thread newThread(boolean virtual, Runnable task, String threadName) {
+        Thread thread = virtual ? unstarted(task, threadName) : null;
+        return thread != null ? thread : new Thread(task, threadName);
+    }
+
+    /**
+     * Creates an executor that starts a new thread from a factory for every task, instead of pooling the threads
+     * (virtual threads are cheap to create and should not be pooled).
+     *
+     * @param factory - the factory of the threads.
+     * @return - the executor, or null if the JVM does not have one (before Java 21).
+     */
+    public static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+        if (perTask == null) return null;
+        try {
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
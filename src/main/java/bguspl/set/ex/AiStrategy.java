@@ -0,0 +1,53 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * The strategy of a computer player: decides which keys its AI thread presses. Each computer player has a strategy
+ * instance of its own, used by its AI thread only.
+ */
+public interface AiStrategy {
+
+    /**
+     * The result of nextKeyPress when there is no key to press.
+     */
+    int NONE = -1;
+
+    /**
+     * @return - the name of the strategy (as in config.aiStrategy, also used for tournament results).
+     */
+    String name();
+
+    /**
+     * Decides on the next key press. May wait (e.g. to think, or for the table to change).
+     *
+     * @return - the slot of the key to press, or NONE to press nothing this time.
+     * @throws InterruptedException - if the AI thread is interrupted while waiting.
+     */
+    int nextKeyPress() throws InterruptedException;
+
+    /**
+     * Creates a strategy by name.
+     *
+     * @param name   - the name of the strategy: random, set-aware or human-like (unknown names fall back to random).
+     * @param env    - the game environment.
+     * @param table  - the view of the table of the computer player.
+     * @param random - the random generator of the strategy (used by the AI thread only).
+     * @return - the strategy.
+     */
+    static AiStrategy create(String name, Env env, TableView table, SplittableRandom random) {
+        switch (name) {
+            case RandomStrategy.NAME:
+                return new RandomStrategy(env, random);
+            case SetAwareStrategy.NAME:
+                return new SetAwareStrategy(env, table);
+            case HumanLikeStrategy.NAME:
+                return new HumanLikeStrategy(env, table, random);
+            default:
+                env.logger.severe("warning: unknown AI strategy " + name + ", using " + RandomStrategy.NAME);
+                return new RandomStrategy(env, random);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package bguspl.set.ex;
+
+/**
+ * A player's claim that the cards under its tokens form a legal set, waiting in the dealer's queue to be verified.
+ */
+class Claim {
+
+    /**
+     * The id of the claiming player.
+     */
+    final int player;
+
+    /**
+     * The slots of the player's tokens when the claim was made.
+     */
+    final int[] slots;
+
+    /**
+     * The cards that were in those slots when the claim was made (respectively).
+     */
+    final int[] cards;
+
+    /**
+     * The time the claim was made (System.nanoTime()).
+     */
+    final long time;
+
+    Claim(int player, int[] slots, int[] cards) {
+        this.player = player;
+        this.slots = slots;
+        this.cards = cards;
+        this.time = System.nanoTime();
+    }
+}
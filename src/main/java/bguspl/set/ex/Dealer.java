@@ -1,9 +1,16 @@
 package bguspl.set.ex;
 
+import bguspl.set.Config;
 import bguspl.set.Env;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.IntStream;
 
 /**
@@ -23,9 +30,30 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The running loops of the players (in the order they were created).
      */
-    private final List<Integer> deck;
+    private final Future<?>[] playerLoops;
+
+    /**
+     * The card ids that are left in the dealer's deck (the first deckCount entries).
+     */
+    private final int[] deck;
+
+    /**
+     * The number of cards left in the dealer's deck.
+     */
+    private int deckCount;
+
+    /**
+     * The claims of the players waiting to be verified, in arrival order. Any player thread adds, only the dealer
+     * thread takes.
+     */
+    private final Queue<Claim> claims = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The dealer thread (null until it starts).
+     */
+    private volatile Thread dealerThread;
 
     /**
      * True iff game should be terminated.
@@ -37,11 +65,59 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
+    /**
+     * The time of the last action (reshuffle or set collected), for the elapsed time display.
+     */
+    private long lastActionTime;
+
+    /**
+     * The configuration of the current countdown (or elapsed time display): the current configuration when the timer
+     * was last reset, so a reload that changes the turn timeout applies at the next reset, with a consistent timer.
+     */
+    private Config timerConfig;
+
+    /**
+     * The resolution of the timer display: seconds normally, hundredths of a second during the countdown warning.
+     */
+    private static final long DISPLAY_SECOND = 1000;
+    private static final long DISPLAY_WARNING = 10;
+
+    /**
+     * The last value shown by the timer display (in display units, see displayUnit) and whether it was a warning.
+     */
+    private long displayedValue = -1;
+    private boolean displayedWarning;
+
+    /**
+     * The seed of the game, and the random generator of the shuffles (seeded with it).
+     */
+    private final long seed;
+    private final SplittableRandom random;
+
+    /**
+     * The recorder of the game's events (null if the game is not recorded).
+     */
+    private final GameRecorder recorder;
+
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, env.config.seed);
+    }
+
+    /**
+     * @param seed - the seed of the game (overrides config.seed, e.g. for the games of a tournament).
+     */
+    public Dealer(Env env, Table table, Player[] players, long seed) {
         this.env = env;
+        timerConfig = env.config;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+        playerLoops = new Future<?>[players.length];
+        deck = IntStream.range(0, env.config.deckSize).toArray();
+        deckCount = deck.length;
+        recorder = env.config.recordFile.isEmpty() ? null : new GameRecorder(env, env.config.recordFile, seed);
+        table.record(recorder);
     }
 
     /**
@@ -49,14 +125,21 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run() {
+        dealerThread = Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        for (int i = 0; i < players.length; ++i)
+            playerLoops[i] = env.start(players[i], "player-" + players[i].id);
+        shuffleDeck();
         while (!shouldFinish()) {
             placeCardsOnTable();
+            updateTimerDisplay(true);
             timerLoop();
             updateTimerDisplay(false);
             removeAllCardsFromTable();
         }
         announceWinners();
+        terminatePlayers();
+        if (recorder != null) recorder.close();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -64,8 +147,9 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!terminate && System.currentTimeMillis() < reshuffleTime && !stuck()) {
             sleepUntilWokenOrTimeout();
+            env.metrics.dealerWakeUps.increment();
             updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
@@ -76,7 +160,23 @@ public class Dealer implements Runnable {
      * Called when the game should be terminated.
      */
     public void terminate() {
-        // TODO implement
+        terminate = true;
+        LockSupport.unpark(dealerThread);
+    }
+
+    /**
+     * Terminates the player threads, in reverse order to the order they were created in.
+     */
+    private void terminatePlayers() {
+        for (int i = players.length - 1; i >= 0; --i) {
+            players[i].terminate();
+            try {
+                playerLoops[i].get();
+            } catch (InterruptedException ignored) {
+            } catch (ExecutionException e) {
+                env.logger.severe("player " + (i + 1) + " failed: " + e.getCause());
+            }
+        }
     }
 
     /**
@@ -85,48 +185,199 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || env.util.findSets(deck, deckCount, 1, null) == 0;
+    }
+
+    /**
+     * Checks if there is no set on the table and waiting for the countdown cannot change that, in which case the
+     * cards should be reshuffled right away: either the deck is empty or there is no countdown.
+     *
+     * @return true iff the table is stuck without a set.
+     */
+    private boolean stuck() {
+        return !table.hasSets() && (deckCount == 0 || timerConfig.turnTimeoutMillis <= 0);
+    }
+
+    /**
+     * Queues a player's claim for verification by the dealer (called by the player thread).
+     *
+     * @param claim - the claim.
+     */
+    void claimSet(Claim claim) {
+        if (recorder != null) recorder.claim(claim);
+        claims.add(claim);
+        LockSupport.unpark(dealerThread);
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
+     * Verifies the queued claims in a batch, in arrival order. A claim whose tokens were removed meanwhile (since
+     * an earlier claim in the batch took one of its cards) is dismissed without a point or a penalty.
      */
     private void removeCardsFromTable() {
-        // TODO implement
+        for (Claim claim = claims.poll(); claim != null; claim = claims.poll()) {
+            Player player = players[claim.player];
+            int verdict = verify(claim);
+            if (recorder != null) recorder.verdict(verdict, claim.player);
+            env.metrics.claimToVerdict.record(System.nanoTime() - claim.time);
+            if (verdict == GameRecorder.DISMISS) {
+                player.dismiss();
+            } else if (verdict == GameRecorder.POINT) {
+                for (int slot : claim.slots)
+                    table.removeCard(slot);
+                player.point();
+                updateTimerDisplay(true);
+            } else {
+                player.penalty();
+            }
+        }
+    }
+
+    /**
+     * Decides on a claim, on the current table.
+     *
+     * @param claim - the claim.
+     * @return - GameRecorder.DISMISS if the claim is no longer current, and otherwise GameRecorder.POINT for a legal
+     *           set or GameRecorder.PENALTY.
+     */
+    int verify(Claim claim) {
+        if (!isCurrent(claim)) return GameRecorder.DISMISS;
+        return env.util.testSet(claim.cards) ? GameRecorder.POINT : GameRecorder.PENALTY;
+    }
+
+    /**
+     * @param claim - a claim.
+     * @return - true iff the cards of the claim are still in place, with the claiming player's tokens on them.
+     */
+    private boolean isCurrent(Claim claim) {
+        for (int i = 0; i < claim.slots.length; ++i)
+            if (table.cardAt(claim.slots[i]) != claim.cards[i] || !table.hasToken(claim.player, claim.slots[i]))
+                return false;
+        return true;
     }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
-        // TODO implement
+        boolean placed = false;
+        for (int slot = 0; slot < env.config.tableSize && deckCount > 0; ++slot)
+            if (table.cardAt(slot) == Table.NONE) {
+                table.placeCard(deck[--deckCount], slot);
+                placed = true;
+            }
+        if (placed && env.config.hints) table.hints();
     }
 
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * The dealer parks until the earliest of: the next change of the timer display, the start of the countdown
+     * warning, the reshuffle time, or a claim (or termination) unparking it.
      */
     private void sleepUntilWokenOrTimeout() {
-        // TODO implement
+        if (!claims.isEmpty() || terminate) return;
+        long delay = nextWakeUp(System.currentTimeMillis());
+        if (delay == Long.MAX_VALUE) LockSupport.park(this);
+        else if (delay > 0) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(delay));
+    }
+
+    /**
+     * Computes how long the dealer may sleep until the timer needs its attention.
+     *
+     * @param now - the current time.
+     * @return - the number of milliseconds until the next wake up (Long.MAX_VALUE if there is no need to wake up).
+     */
+    private long nextWakeUp(long now) {
+        Config config = timerConfig;
+        long timeout = config.turnTimeoutMillis;
+        if (timeout < 0) return Long.MAX_VALUE;
+        if (timeout == 0) return DISPLAY_SECOND - (now - lastActionTime) % DISPLAY_SECOND;
+
+        long remaining = reshuffleTime - now;
+        if (remaining <= 0) return 0;
+        boolean warning = remaining <= config.turnTimeoutWarningMillis;
+        long unit = displayUnit(warning);
+        long delay = remaining % unit == 0 ? unit : remaining % unit;
+        return warning ? delay : Math.min(delay, remaining - config.turnTimeoutWarningMillis);
+    }
+
+    private static long displayUnit(boolean warning) {
+        return warning ? DISPLAY_WARNING : DISPLAY_SECOND;
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
+     * The display is only updated when the value it shows changes.
      */
     private void updateTimerDisplay(boolean reset) {
-        // TODO implement
+        long now = System.currentTimeMillis();
+        if (reset) {
+            timerConfig = env.currentConfig();
+            reshuffleTime = timerConfig.turnTimeoutMillis > 0 ? now + timerConfig.turnTimeoutMillis : Long.MAX_VALUE;
+            lastActionTime = now;
+        }
+        Config config = timerConfig;
+        if (config.turnTimeoutMillis > 0) {
+            long remaining = Math.max(0, reshuffleTime - now);
+            boolean warning = remaining <= config.turnTimeoutWarningMillis;
+            long unit = displayUnit(warning);
+            long value = (remaining + unit - 1) / unit; // rounded up, so the countdown reaches 0 when time is up
+            if (reset || value != displayedValue || warning != displayedWarning)
+                env.ui.setCountdown(value * unit, warning);
+            displayedValue = value;
+            displayedWarning = warning;
+        } else if (config.turnTimeoutMillis == 0) {
+            long value = (now - lastActionTime) / DISPLAY_SECOND;
+            if (reset || value != displayedValue)
+                env.ui.setElapsed(value * DISPLAY_SECOND);
+            displayedValue = value;
+        }
     }
 
     /**
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        // TODO implement
+        for (int slot = 0; slot < env.config.tableSize; ++slot) {
+            int card = table.cardAt(slot);
+            if (card == Table.NONE) continue;
+            table.removeCard(slot);
+            deck[deckCount++] = card;
+        }
+        // the tokens are gone with the cards, so the pending claims are no longer current
+        for (Claim claim = claims.poll(); claim != null; claim = claims.poll())
+            players[claim.player].dismiss();
+        env.metrics.reshuffles.increment();
+        shuffleDeck();
+    }
+
+    /**
+     * Shuffles the cards in the deck.
+     */
+    private void shuffleDeck() {
+        for (int i = deckCount - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int card = deck[i];
+            deck[i] = deck[j];
+            deck[j] = card;
+        }
+    }
+
+    /**
+     * Creates the random generator of a computer player's strategy, derived from the seed of the game.
+     *
+     * @param player - the id of the player.
+     * @return - the random generator.
+     */
+    SplittableRandom random(int player) {
+        return new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L * (player + 1));
     }
 
     /**
      * Check who is/are the winner/s and displays them.
      */
     private void announceWinners() {
-        // TODO implement
+        int max = Arrays.stream(players).mapToInt(Player::score).max().orElse(0);
+        env.ui.announceWinner(Arrays.stream(players).filter(player -> player.score() == max).mapToInt(player -> player.id).toArray());
     }
 }
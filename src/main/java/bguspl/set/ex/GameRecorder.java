@@ -0,0 +1,163 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Records the events of a game to a compact binary log, for GameReplayer.
+ * The log starts with a header (MAGIC, VERSION, the seed and the game dimensions) followed by the events. Each event
+ * is a type byte, the nanoseconds since the previous event and the event's ids, all as unsigned varints (7 bits per
+ * byte, low bits first), so a typical event takes 3 to 5 bytes.
+ * Any thread may record. Events are written under the recorder's lock, in the order they are recorded, and the
+ * callers record outside their own locks. The table keeps the order the replay needs: the dealer's thread records its
+ * card events in order, a placed card before players can see it, and a token event is recorded after the token changed
+ * (so after the placement of its card). A token that the dealer cleared before its placement was recorded is followed
+ * by a removal (see Table.placeToken), so replaying the events in order ends with the same tokens.
+ */
+class GameRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x53455452; // "SETR"
+    static final int VERSION = 1;
+
+    /**
+     * The event types: a card placed (card, slot) or removed (slot), a token placed or removed (player, slot), a claim
+     * (player, set size, slots, cards), and the dealer's verdict on a claim (player).
+     */
+    static final int PLACE_CARD = 1;
+    static final int REMOVE_CARD = 2;
+    static final int PLACE_TOKEN = 3;
+    static final int REMOVE_TOKEN = 4;
+    static final int CLAIM = 5;
+    static final int POINT = 6;
+    static final int PENALTY = 7;
+    static final int DISMISS = 8;
+
+    private final Env env;
+
+    private final String file;
+
+    /**
+     * The log (null once closed, or after a write error).
+     */
+    private DataOutputStream out;
+
+    /**
+     * The time of the previous event (as in System.nanoTime()).
+     */
+    private long lastTime;
+
+    /**
+     * Creates the log file and writes its header.
+     *
+     * @param env  - the game environment.
+     * @param file - the path of the log file.
+     * @param seed - the seed of the game.
+     */
+    GameRecorder(Env env, String file, long seed) {
+        this.env = env;
+        this.file = file;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(file)), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            writeVarint(env.config.featureSize);
+            writeVarint(env.config.featureCount);
+            writeVarint(env.config.rows);
+            writeVarint(env.config.columns);
+            writeVarint(env.config.players);
+        } catch (IOException e) {
+            failed(e);
+        }
+        lastTime = System.nanoTime();
+    }
+
+    void placeCard(int card, int slot) {
+        record(PLACE_CARD, card, slot);
+    }
+
+    void removeCard(int slot) {
+        record(REMOVE_CARD, slot, -1);
+    }
+
+    void placeToken(int player, int slot) {
+        record(PLACE_TOKEN, player, slot);
+    }
+
+    void removeToken(int player, int slot) {
+        record(REMOVE_TOKEN, player, slot);
+    }
+
+    synchronized void claim(Claim claim) {
+        if (out == null) return;
+        try {
+            writeEvent(CLAIM);
+            writeVarint(claim.player);
+            writeVarint(claim.slots.length);
+            for (int slot : claim.slots)
+                writeVarint(slot);
+            for (int card : claim.cards)
+                writeVarint(card);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * @param verdict - POINT, PENALTY or DISMISS.
+     * @param player  - the player whose claim it was.
+     */
+    void verdict(int verdict, int player) {
+        record(verdict, player, -1);
+    }
+
+    private synchronized void record(int type, int first, int second) {
+        if (out == null) return;
+        try {
+            writeEvent(type);
+            writeVarint(first);
+            if (second >= 0) writeVarint(second);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void writeEvent(int type) throws IOException {
+        long now = System.nanoTime();
+        out.writeByte(type);
+        writeVarint(now - lastTime);
+        lastTime = now;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private void failed(IOException e) {
+        env.logger.severe("cannot record the game to " + file + ": " + e);
+        out = null;
+    }
+
+    /**
+     * Flushes the log and closes its file.
+     */
+    @Override
+    public synchronized void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            failed(e);
+        }
+        out = null;
+    }
+}
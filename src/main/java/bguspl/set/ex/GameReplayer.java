@@ -0,0 +1,213 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Replays a game recorded by GameRecorder at full speed, on one thread: the card and token events are applied to a
+ * fresh Table, and every recorded verdict is checked against the Dealer's verification of the claim on the replayed
+ * table (and then applied to the Player, as in the game). The recorded timestamps are kept for reference only, so the
+ * replay measures the table and dealer logic without the timing noise of the live game.
+ */
+public class GameReplayer {
+
+    private final Env env;
+
+    /**
+     * The recorded log (read into memory, so the replay does no I/O) and the position of the next byte to decode.
+     */
+    private final byte[] log;
+    private int position;
+
+    /**
+     * The seed of the recorded game.
+     */
+    public final long seed;
+
+    private final Table table;
+    private final Player[] players;
+    private final Dealer dealer;
+
+    /**
+     * The claim of each player waiting for its verdict (null if none).
+     */
+    private final Claim[] claims;
+
+    /**
+     * The replay statistics: events replayed, claims verified, verdicts that differ from the recorded ones, and the
+     * duration of the recorded game (in nanoseconds).
+     */
+    private long events;
+    private long verdicts;
+    private long mismatches;
+    private long recordedNanos;
+
+    /**
+     * Reads a recorded game and sets up its table, dealer and players (which are not started).
+     *
+     * @param logger - the logger.
+     * @param file   - the path of the recorded game.
+     * @throws IOException - if the file cannot be read or is not a recorded game.
+     */
+    public GameReplayer(Logger logger, String file) throws IOException {
+        log = Files.readAllBytes(Paths.get(file));
+        if (log.length < 13 || readInt() != GameRecorder.MAGIC || log[position++] != GameRecorder.VERSION)
+            throw new IOException(file + " is not a recorded game (version " + GameRecorder.VERSION + ")");
+        seed = readLong();
+
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Long.toString(readVarint()));
+        properties.put("FeatureCount", Long.toString(readVarint()));
+        properties.put("Rows", Long.toString(readVarint()));
+        properties.put("Columns", Long.toString(readVarint()));
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Long.toString(readVarint()));
+        properties.put("Simulation", "True");
+        properties.put("Seed", Long.toString(seed));
+        // a silent logger of its own, since the config sets the level and format of its logger
+        Logger configLogger = Logger.getAnonymousLogger();
+        configLogger.setUseParentHandlers(false);
+        Config config = new Config(configLogger, properties);
+
+        env = new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config));
+        table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players, seed);
+        for (int i = 0; i < players.length; ++i)
+            players[i] = new Player(env, dealer, table, i, false);
+        claims = new Claim[config.players];
+    }
+
+    /**
+     * Replays all the events of the recorded game.
+     *
+     * @throws IOException - if the log is truncated or has an unknown event.
+     */
+    public void replay() throws IOException {
+        while (position < log.length) {
+            int type = log[position++];
+            recordedNanos += readVarint();
+            switch (type) {
+                case GameRecorder.PLACE_CARD:
+                    int card = readId();
+                    table.placeCard(card, readId());
+                    break;
+                case GameRecorder.REMOVE_CARD:
+                    table.removeCard(readId());
+                    break;
+                case GameRecorder.PLACE_TOKEN:
+                    int player = readId();
+                    table.placeToken(player, readId());
+                    break;
+                case GameRecorder.REMOVE_TOKEN:
+                    player = readId();
+                    table.removeToken(player, readId());
+                    break;
+                case GameRecorder.CLAIM:
+                    player = readId();
+                    int[] slots = new int[readId()];
+                    int[] cards = new int[slots.length];
+                    for (int i = 0; i < slots.length; ++i)
+                        slots[i] = readId();
+                    for (int i = 0; i < cards.length; ++i)
+                        cards[i] = readId();
+                    claims[player] = new Claim(player, slots, cards);
+                    break;
+                case GameRecorder.POINT:
+                case GameRecorder.PENALTY:
+                case GameRecorder.DISMISS:
+                    verdict(type, readId());
+                    break;
+                default:
+                    throw new IOException("unknown event " + type + " at byte " + (position - 1));
+            }
+            ++events;
+        }
+    }
+
+    /**
+     * Checks a recorded verdict against the dealer's, and applies it to the player.
+     */
+    private void verdict(int recorded, int player) {
+        Claim claim = claims[player];
+        claims[player] = null;
+        ++verdicts;
+        if (claim == null || dealer.verify(claim) != recorded) {
+            ++mismatches;
+            env.logger.severe("replay: verdict mismatch for player " + player + " at event " + events);
+        }
+        if (recorded == GameRecorder.POINT) players[player].point();
+        else if (recorded == GameRecorder.PENALTY) players[player].penalty();
+        else players[player].dismiss();
+    }
+
+    /**
+     * @return - the number of events replayed.
+     */
+    public long events() {
+        return events;
+    }
+
+    /**
+     * @return - the number of verdicts checked.
+     */
+    public long verdicts() {
+        return verdicts;
+    }
+
+    /**
+     * @return - the number of verdicts of the dealer that differ from the recorded ones (0 for a faithful replay).
+     */
+    public long mismatches() {
+        return mismatches;
+    }
+
+    /**
+     * @return - the duration of the recorded game, in nanoseconds.
+     */
+    public long recordedNanos() {
+        return recordedNanos;
+    }
+
+    /**
+     * @param player - the id of a player.
+     * @return - the score of the player so far in the replay.
+     */
+    public int score(int player) {
+        return players[player].score();
+    }
+
+    private int readId() throws IOException {
+        return (int) readVarint();
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= log.length) throw new EOFException("truncated recording");
+            byte b = log[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private int readInt() {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; ++i)
+            value = value << 8 | log[position++] & 0xFF;
+        return value;
+    }
+
+    private long readLong() {
+        return (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,35 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays like the set-aware strategy, but at a human pace and with mistakes: it waits a random time around
+ * config.humanLikeDelayMillis before each key press, and with probability config.humanLikeMistakeRate presses a
+ * random slot instead of the planned one (so some of its claims are wrong).
+ */
+class HumanLikeStrategy extends SetAwareStrategy {
+
+    static final String NAME = "human-like";
+
+    private final SplittableRandom random;
+
+    HumanLikeStrategy(Env env, TableView table, SplittableRandom random) {
+        super(env, table);
+        this.random = random;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int nextKeyPress() throws InterruptedException {
+        // between half and one and a half times the average delay
+        Thread.sleep(env.config.humanLikeDelayMillis / 2 + random.nextLong(env.config.humanLikeDelayMillis + 1));
+        if (random.nextDouble() < env.config.humanLikeMistakeRate) return random.nextInt(env.config.tableSize);
+        return super.nextKeyPress();
+    }
+}
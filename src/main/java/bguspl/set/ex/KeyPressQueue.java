@@ -0,0 +1,123 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer/single-consumer queue of key presses (slots), backed by a primitive ring buffer.
+ * The producer is the input source of a player (the Swing event dispatch thread or the AI thread) and the consumer is
+ * the player thread. Queuing allocates nothing, and waiting threads are parked and unparked directly.
+ *
+ * @inv 0 <= tail - head <= capacity
+ */
+class KeyPressQueue {
+
+    /**
+     * The ring buffer (its length is a power of 2, at least capacity).
+     */
+    private final int[] slots;
+
+    /**
+     * The times the key presses in the ring buffer were queued (System.nanoTime()), for the latency metrics.
+     */
+    private final long[] times;
+
+    /**
+     * The time the key press taken last was queued (read and written by the consumer only).
+     */
+    private long takenTime;
+
+    /**
+     * The maximum number of queued key presses.
+     */
+    private final int capacity;
+
+    /**
+     * The number of key presses taken (written by the consumer only).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The number of key presses queued (written by the producer only).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The consumer/producer thread while it is waiting for the queue to be non-empty/non-full (null otherwise).
+     */
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+
+    KeyPressQueue(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        slots = new int[Integer.highestOneBit(this.capacity * 2 - 1)];
+        times = new long[slots.length];
+    }
+
+    /**
+     * Queues a key press if the queue is not full (producer only). Never blocks.
+     *
+     * @param slot - the slot of the key pressed.
+     * @return - true iff the key press was queued.
+     */
+    boolean offer(int slot) {
+        long t = tail.get();
+        if (t - head.get() >= capacity) return false;
+        slots[(int) t & (slots.length - 1)] = slot;
+        times[(int) t & (slots.length - 1)] = System.nanoTime();
+        tail.set(t + 1);
+        LockSupport.unpark(waitingConsumer);
+        return true;
+    }
+
+    /**
+     * Queues a key press, waiting while the queue is full (producer only).
+     *
+     * @param slot - the slot of the key pressed.
+     * @throws InterruptedException - if the producer is interrupted while waiting.
+     */
+    void put(int slot) throws InterruptedException {
+        while (!offer(slot)) {
+            waitingProducer = Thread.currentThread();
+            if (tail.get() - head.get() >= capacity) LockSupport.park(this);
+            waitingProducer = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Takes the oldest key press, waiting while the queue is empty (consumer only).
+     *
+     * @return - the slot of the key pressed.
+     * @throws InterruptedException - if the consumer is interrupted while waiting.
+     */
+    int take() throws InterruptedException {
+        long h = head.get();
+        while (tail.get() == h) {
+            waitingConsumer = Thread.currentThread();
+            if (tail.get() == h) LockSupport.park(this);
+            waitingConsumer = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        int slot = slots[(int) h & (slots.length - 1)];
+        takenTime = times[(int) h & (slots.length - 1)];
+        head.set(h + 1);
+        LockSupport.unpark(waitingProducer);
+        return slot;
+    }
+
+    /**
+     * @return - the time the key press taken last was queued (System.nanoTime(); consumer only).
+     */
+    long takenTime() {
+        return takenTime;
+    }
+
+    /**
+     * Discards all the queued key presses (consumer only).
+     */
+    void clear() {
+        head.set(tail.get());
+        LockSupport.unpark(waitingProducer);
+    }
+}
@@ -2,6 +2,10 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * This class manages the players' threads and data
  *
@@ -31,20 +35,31 @@ public class Player implements Runnable {
     public final int id;
 
     /**
-     * The thread representing the current player.
+     * The thread representing the current player (while the player loop runs on it).
+     */
+    private volatile Thread playerThread;
+
+    /**
+     * The thread of the AI (computer) player (an additional thread used to generate key presses, while the AI loop
+     * runs on it).
      */
-    private Thread playerThread;
+    private volatile Thread aiThread;
 
     /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
+     * The running AI loop (null for human players).
      */
-    private Thread aiThread;
+    private Future<?> aiLoop;
 
     /**
      * True iff the player is human (not a computer player).
      */
     private final boolean human;
 
+    /**
+     * The strategy that decides the key presses of the AI thread (null for human players).
+     */
+    private final AiStrategy strategy;
+
     /**
      * True iff game should be terminated.
      */
@@ -55,6 +70,26 @@ public class Player implements Runnable {
      */
     private int score;
 
+    /**
+     * The key presses waiting to be handled by the player thread.
+     */
+    private final KeyPressQueue keyPresses;
+
+    /**
+     * The slots of the player's tokens (working buffer of the player thread).
+     */
+    private final int[] tokenSlots;
+
+    /**
+     * True iff the player has a claim waiting for the dealer's verdict.
+     */
+    private volatile boolean claimPending;
+
+    /**
+     * The time until which the player is frozen (as in System.currentTimeMillis()), following the dealer's verdict.
+     */
+    private volatile long freezeUntil;
+
     /**
      * The class constructor.
      *
@@ -70,6 +105,10 @@ public class Player implements Runnable {
         this.table = table;
         this.id = id;
         this.human = human;
+        strategy = human ? null : AiStrategy.create(env.config.aiStrategy(id), env, new TableView(table, id),
+                dealer.random(id));
+        keyPresses = new KeyPressQueue(env.config.keyQueueSize);
+        tokenSlots = new int[env.config.featureSize];
     }
 
     /**
@@ -81,47 +120,138 @@ public class Player implements Runnable {
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         if (!human) createArtificialIntelligence();
 
-        while (!terminate) 
-        {
-            // TODO implement main player loop
+        while (!terminate) {
+            try {
+                handleKeyPress(keyPresses.take());
+            } catch (InterruptedException ignored) {}
         }
-        if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
+        if (!human) try {
+            aiLoop.get();
+        } catch (InterruptedException | ExecutionException ignored) {}
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        detachThread();
+    }
+
+    /**
+     * Called by a loop of the player (player or AI) before it returns, so that terminate() no longer interrupts
+     * its thread, which may go on to run other loops (when the loops run on a shared executor).
+     */
+    private synchronized void detachThread() {
+        if (Thread.currentThread() == playerThread) playerThread = null;
+        if (Thread.currentThread() == aiThread) aiThread = null;
+        Thread.interrupted(); // clear an interrupt of terminate() that came after the loop ended
+    }
+
+    /**
+     * Toggles the player's token on a slot, and claims a set once the player has a token on every card of one.
+     *
+     * @param slot - the slot of the key pressed.
+     */
+    private void handleKeyPress(int slot) {
+        if (table.removeToken(id, slot)) return;
+        if (tokens(tokenSlots) == tokenSlots.length || !table.placeToken(id, slot)) return;
+        env.metrics.keyPressToToken.record(System.nanoTime() - keyPresses.takenTime());
+        if (tokens(tokenSlots) == tokenSlots.length) claimSet(tokenSlots.clone());
+    }
+
+    /**
+     * Finds the slots of the player's tokens.
+     *
+     * @param slots - the buffer to write the slots to.
+     * @return - the number of slots written (up to the buffer's length).
+     */
+    private int tokens(int[] slots) {
+        int count = 0;
+        for (int slot = 0; slot < env.config.tableSize && count < slots.length; ++slot)
+            if (table.hasToken(id, slot)) slots[count++] = slot;
+        return count;
+    }
+
+    /**
+     * Claims that the cards in the given slots form a set, waits for the dealer's verdict and serves the freeze
+     * that follows it (if any). Key presses made meanwhile are discarded.
+     *
+     * @param slots - the slots of the player's tokens.
+     */
+    private void claimSet(int[] slots) {
+        int[] cards = new int[slots.length];
+        for (int i = 0; i < slots.length; ++i)
+            cards[i] = table.cardAt(slots[i]);
+
+        claimPending = true;
+        dealer.claimSet(new Claim(id, slots, cards));
+        while (claimPending && !terminate)
+            LockSupport.park(this);
+
+        long remaining = freezeUntil - System.currentTimeMillis();
+        if (remaining > 0) {
+            while (remaining > 0 && !terminate) {
+                env.ui.setFreeze(id, remaining);
+                try {
+                    // wake up when the displayed seconds change
+                    Thread.sleep(remaining % 1000 == 0 ? 1000 : remaining % 1000);
+                } catch (InterruptedException ignored) {}
+                remaining = freezeUntil - System.currentTimeMillis();
+            }
+            env.ui.setFreeze(id, 0);
+        }
+        keyPresses.clear();
+    }
+
+    /**
+     * Delivers the dealer's verdict on the player's pending claim (if any).
+     *
+     * @param freezeMillis - the number of milliseconds to freeze the player for.
+     */
+    private void verdict(long freezeMillis) {
+        if (freezeMillis > 0) freezeUntil = System.currentTimeMillis() + freezeMillis;
+        claimPending = false;
+        LockSupport.unpark(playerThread);
     }
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses, as decided by the player's strategy. If the queue of key presses is full, the thread waits until
+     * it is not full.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        aiLoop = env.start(() -> {
+            aiThread = Thread.currentThread();
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
-                // TODO implement player key press simulator
                 try {
-                    synchronized (this) { wait(); }
+                    int slot = strategy.nextKeyPress();
+                    if (slot != AiStrategy.NONE) keyPressed(slot);
                 } catch (InterruptedException ignored) {}
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+            detachThread();
         }, "computer-" + id);
-        aiThread.start();
     }
 
     /**
      * Called when the game should be terminated.
      */
-    public void terminate() {
-        // TODO implement
+    public synchronized void terminate() {
+        terminate = true;
+        if (aiThread != null) aiThread.interrupt();
+        if (playerThread != null) playerThread.interrupt();
     }
 
     /**
      * This method is called when a key is pressed.
+     * Human key presses come from the Swing event dispatch thread (or the server thread) and are dropped when the queue
+     * is full, so the input never blocks. Computer key presses wait for room in the queue.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        // TODO implement
+        if (human) keyPresses.offer(slot);
+        else try {
+            keyPresses.put(slot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -131,20 +261,33 @@ public class Player implements Runnable {
      * @post - the player's score is updated in the ui.
      */
     public void point() {
-        // TODO implement
-
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
+        verdict(env.currentConfig().pointFreezeMillis);
     }
 
     /**
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        // TODO implement
+        verdict(env.currentConfig().penaltyFreezeMillis);
+    }
+
+    /**
+     * Dismiss the player's claim without a point or a penalty (its cards were taken before it was verified).
+     */
+    void dismiss() {
+        verdict(0);
     }
 
     public int score() {
         return score;
     }
+
+    /**
+     * @return - the name of the strategy that plays for the player (for tournament results).
+     */
+    public String strategy() {
+        return human ? "human" : strategy.name();
+    }
 }
@@ -0,0 +1,32 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Presses random keys, as fast as the player takes them.
+ */
+class RandomStrategy implements AiStrategy {
+
+    static final String NAME = "random";
+
+    private final Env env;
+
+    private final SplittableRandom random;
+
+    RandomStrategy(Env env, SplittableRandom random) {
+        this.env = env;
+        this.random = random;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int nextKeyPress() {
+        return random.nextInt(env.config.tableSize);
+    }
+}
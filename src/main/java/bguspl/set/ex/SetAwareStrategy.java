@@ -0,0 +1,93 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+
+/**
+ * Finds a legal set in a snapshot of the table with Util.findSets and presses its keys: first to take the player's
+ * tokens off other slots, then to place tokens on the set. The table may change meanwhile, so a claim of this
+ * strategy can still be wrong (or dismissed).
+ */
+class SetAwareStrategy implements AiStrategy {
+
+    static final String NAME = "set-aware";
+
+    /**
+     * The number of milliseconds to wait before looking for a set again, when there is none on the table.
+     */
+    private static final long IDLE_MILLIS = 10;
+
+    protected final Env env;
+
+    private final TableView table;
+
+    /**
+     * Working buffers: the card in each slot, the cards on the table and their slots (respectively), a set and
+     * whether each slot is in it.
+     */
+    private final int[] slotCards;
+    private final int[] cards;
+    private final int[] cardSlots;
+    private final int[] set;
+    private final boolean[] inSet;
+
+    /**
+     * The planned key presses: plan[next .. length - 1] are still to be pressed.
+     */
+    private final int[] plan;
+    private int planNext;
+    private int planLength;
+
+    SetAwareStrategy(Env env, TableView table) {
+        this.env = env;
+        this.table = table;
+        slotCards = new int[env.config.tableSize];
+        cards = new int[env.config.tableSize];
+        cardSlots = new int[env.config.tableSize];
+        set = new int[env.config.featureSize];
+        inSet = new boolean[env.config.tableSize];
+        plan = new int[env.config.tableSize + env.config.featureSize];
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int nextKeyPress() throws InterruptedException {
+        if (planNext == planLength && !plan()) {
+            Thread.sleep(IDLE_MILLIS);
+            return NONE;
+        }
+        return plan[planNext++];
+    }
+
+    /**
+     * Plans the key presses that claim a set on the table.
+     *
+     * @return - true iff there is a key to press.
+     */
+    private boolean plan() {
+        planNext = planLength = 0;
+        table.snapshot(slotCards);
+        int length = 0;
+        for (int slot = 0; slot < slotCards.length; ++slot)
+            if (slotCards[slot] != Table.NONE) {
+                cards[length] = slotCards[slot];
+                cardSlots[length++] = slot;
+            }
+        if (env.util.findSets(cards, length, 1, set) == 0) return false;
+
+        Arrays.fill(inSet, false);
+        for (int card : set)
+            for (int i = 0; i < length; ++i)
+                if (cards[i] == card) inSet[cardSlots[i]] = true;
+        for (int slot = 0; slot < inSet.length; ++slot)
+            if (!inSet[slot] && table.hasToken(slot)) plan[planLength++] = slot;
+        for (int slot = 0; slot < inSet.length; ++slot)
+            if (inSet[slot] && !table.hasToken(slot)) plan[planLength++] = slot;
+        return planLength > 0;
+    }
+}
@@ -0,0 +1,87 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps the legal sets among the cards on the table, as slots, so that they need not be searched for.
+ * The table adds the sets a card forms when it is placed and drops the sets of a slot when its card is removed.
+ *
+ * @inv 0 <= count
+ * @inv sets[i * setSize .. (i + 1) * setSize - 1] are the slots of set i (sorted), for all 0 <= i < count
+ */
+class SetIndex {
+
+    /**
+     * The number of cards (slots) in a set.
+     */
+    private final int setSize;
+
+    /**
+     * The slots of the sets in the index, setSize entries per set.
+     */
+    private int[] sets;
+
+    /**
+     * The number of sets in the index.
+     */
+    private int count;
+
+    SetIndex(int setSize) {
+        this.setSize = setSize;
+        this.sets = new int[setSize * 8];
+    }
+
+    /**
+     * Adds a set to the index.
+     *
+     * @param slots - the slots of the set (the first setSize entries).
+     */
+    void add(int[] slots) {
+        if ((count + 1) * setSize > sets.length) sets = Arrays.copyOf(sets, sets.length * 2);
+        System.arraycopy(slots, 0, sets, count * setSize, setSize);
+        Arrays.sort(sets, count * setSize, (count + 1) * setSize);
+        ++count;
+    }
+
+    /**
+     * Removes all the sets that include a slot from the index.
+     *
+     * @param slot - the slot.
+     */
+    void remove(int slot) {
+        for (int i = count - 1; i >= 0; --i)
+            for (int j = i * setSize; j < (i + 1) * setSize; ++j)
+                if (sets[j] == slot) {
+                    // move the last set into the place of the removed one
+                    System.arraycopy(sets, --count * setSize, sets, i * setSize, setSize);
+                    break;
+                }
+    }
+
+    /**
+     * Removes all the sets from the index.
+     */
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return - the number of sets in the index.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Copies the slots of up to max sets to a buffer (setSize entries per set).
+     *
+     * @param slots - the buffer (at least max * setSize long).
+     * @param max   - the maximum number of sets to copy.
+     * @return - the number of sets copied.
+     */
+    int copy(int[] slots, int max) {
+        int copied = Math.min(max, count);
+        System.arraycopy(sets, 0, slots, 0, copied * setSize);
+        return copied;
+    }
+}
@@ -3,14 +3,21 @@ package bguspl.set.ex;
 import bguspl.set.Env;
 
 import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * This class contains the data that is visible to the player.
+ * Concurrency: the cards are guarded by cardsLock. The dealer changes them under the write lock, and clears the
+ * tokens of the slots it changes. Placing a token checks the card and sets the token under an optimistic read (no
+ * write to the lock's state, so players never contend on it), and undoes and retries under the read lock if the
+ * dealer changed the cards meanwhile, so a token is never left on a card that was replaced. The tokens themselves are
+ * a lock-free bitmap of players per slot, updated by CAS. The user interface and the recorder are called outside the
+ * lock: a placed card is recorded, and the removal of the tokens it replaces shown, before it is published.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv slotToCard[x] != NONE iff bit x of occupiedSlots is on
+ * @inv the bit of player p in the tokens of slot x is on implies slotToCard[x] != NONE
  */
 public class Table {
 
@@ -20,14 +27,66 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * The value of an empty slot in slotToCard, and of a card that is not on the table in cardToSlot.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    static final int NONE = -1;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a slot and the card placed in it (NONE if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] slotToCard; // card per slot (if any)
+
+    /**
+     * Mapping between a card and the slot it is in (NONE if none).
+     */
+    protected final int[] cardToSlot; // slot per card (if any)
+
+    /**
+     * The slots that hold a card: bit slot % 64 of occupiedSlots[slot / 64] is on iff slotToCard[slot] != NONE.
+     */
+    private final long[] occupiedSlots;
+
+    /**
+     * The tokens placed on the table, as a bitmask of players per slot: the player has a token on the slot iff bit
+     * player % 64 of tokens[slot * tokenWords + player / 64] is on.
+     */
+    private final AtomicLongArray tokens;
+
+    /**
+     * The number of words in the tokens bitmask of each slot (one per 64 players).
+     */
+    private final int tokenWords;
+
+    /**
+     * The lock of the cards on the table (slotToCard, cardToSlot, occupiedSlots and sets).
+     */
+    private final StampedLock cardsLock = new StampedLock();
+
+    /**
+     * The boxed mappings given to the testing constructor (null otherwise). Tests read and write them directly: every
+     * change to the cards is written through to them (one entry per mapping changed), and the operations that read the
+     * cards first pick up the changes made to them by the test (see readBoxed()). Without them, the cost is a null check.
+     */
+    private final Integer[] boxedSlotToCard;
+    private final Integer[] boxedCardToSlot;
+
+    /**
+     * The legal sets among the cards on the table (kept up to date by placeCard and removeCard).
+     */
+    private final SetIndex sets;
+
+    /**
+     * Working buffers for indexing the sets of a placed card: the cards and slots of a (partial) set and the
+     * occupied slots of the table.
+     */
+    private final int[] setCards;
+    private final int[] setSlots;
+    private final int[] occupied;
+
+    /**
+     * The recorder of the game's events (null if the game is not recorded). Set before the game starts.
+     */
+    private GameRecorder recorder;
 
     /**
      * Constructor for testing.
@@ -38,9 +97,7 @@ public class Table {
      */
     public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
 
-        this.env = env;
-        this.slotToCard = slotToCard;
-        this.cardToSlot = cardToSlot;
+        this(env, slotToCard.length, cardToSlot.length, slotToCard, cardToSlot);
     }
 
     /**
@@ -50,20 +107,133 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, env.config.tableSize, env.config.deckSize, null, null);
+    }
+
+    private Table(Env env, int tableSize, int deckSize, Integer[] boxedSlotToCard, Integer[] boxedCardToSlot) {
+
+        this.env = env;
+        this.slotToCard = new int[tableSize];
+        this.cardToSlot = new int[deckSize];
+        Arrays.fill(slotToCard, NONE);
+        Arrays.fill(cardToSlot, NONE);
+        occupiedSlots = new long[(tableSize + Long.SIZE - 1) / Long.SIZE];
+        this.boxedSlotToCard = boxedSlotToCard;
+        this.boxedCardToSlot = boxedCardToSlot;
+
+        int setSize = env.config.featureSize;
+        sets = new SetIndex(setSize);
+        setCards = new int[setSize];
+        setSlots = new int[setSize];
+        occupied = new int[tableSize];
+
+        tokenWords = Math.max(1, (env.config.players + Long.SIZE - 1) / Long.SIZE);
+        tokens = new AtomicLongArray(tableSize * tokenWords);
+        if (boxedSlotToCard != null) readBoxed();
+    }
+
+    /**
+     * Picks up the changes made directly to the boxed mappings of the testing constructor: the write lock is taken
+     * only if a slot of boxedSlotToCard differs from the table. Must be called without holding cardsLock.
+     */
+    private void readBoxed() {
+        if (!boxedChanged()) return;
+        long stamp = cardsLock.writeLock();
+        try {
+            for (int slot = 0; slot < slotToCard.length; ++slot) {
+                int card = boxedSlotToCard[slot] == null ? NONE : boxedSlotToCard[slot];
+                if (card == slotToCard[slot]) continue;
+                detachCard(slot);
+                if (card != NONE) {
+                    if (cardToSlot[card] != NONE) detachCard(cardToSlot[card]);
+                    attachCard(card, slot);
+                }
+            }
+        } finally {
+            cardsLock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean boxedChanged() {
+        for (int slot = 0; slot < slotToCard.length; ++slot)
+            if ((boxedSlotToCard[slot] == null ? NONE : boxedSlotToCard[slot]) != slotToCard[slot]) return true;
+        return false;
+    }
+
+    /**
+     * Records the table's events from now on (called before the game starts).
+     *
+     * @param recorder - the recorder (null for no recording).
+     */
+    void record(GameRecorder recorder) {
+        this.recorder = recorder;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        if (boxedSlotToCard != null) readBoxed();
+        int setSize = env.config.featureSize;
+        int[] slots, cards;
+        int found;
+        long stamp = cardsLock.readLock();
+        try {
+            slots = new int[sets.count() * setSize];
+            found = sets.copy(slots, sets.count());
+            cards = Arrays.stream(slots).map(slot -> slotToCard[slot]).toArray();
+        } finally {
+            cardsLock.unlockRead(stamp);
+        }
+        for (int i = 0; i < found; ++i) {
+            int[] set = Arrays.copyOfRange(slots, i * setSize, (i + 1) * setSize);
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+            int[][] features = env.util.cardsToFeatures(Arrays.copyOfRange(cards, i * setSize, (i + 1) * setSize));
+            System.out.println(sb.append("slots: ").append(Arrays.toString(set)).append(" features: ").append(Arrays.deepToString(features)));
+        }
+    }
+
+    /**
+     * @return - true iff there is at least one legal set among the cards on the table.
+     */
+    public boolean hasSets() {
+        return countSets() > 0;
+    }
+
+    /**
+     * Count the number of legal sets among the cards on the table.
+     *
+     * @return - the number of sets on the table.
+     */
+    public int countSets() {
+        if (boxedSlotToCard != null) readBoxed();
+        long stamp = cardsLock.tryOptimisticRead();
+        int count = sets.count();
+        if (cardsLock.validate(stamp)) return count;
+
+        stamp = cardsLock.readLock();
+        try {
+            return sets.count();
+        } finally {
+            cardsLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies the slots of up to max legal sets on the table to a buffer (config.featureSize sorted slots per set).
+     *
+     * @param slots - the buffer to copy the slots to (at least max * config.featureSize long).
+     * @param max   - the maximum number of sets to copy.
+     * @return - the number of sets copied.
+     */
+    public int findSets(int[] slots, int max) {
+        if (boxedSlotToCard != null) readBoxed();
+        long stamp = cardsLock.readLock();
+        try {
+            return sets.copy(slots, max);
+        } finally {
+            cardsLock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -72,13 +242,70 @@ public class Table {
      * @return - the number of cards on the table.
      */
     public int countCards() {
+        if (boxedSlotToCard != null) readBoxed();
+        long stamp = cardsLock.tryOptimisticRead();
+        int cards = countOccupied();
+        if (cardsLock.validate(stamp)) return cards;
+
+        stamp = cardsLock.readLock();
+        try {
+            return countOccupied();
+        } finally {
+            cardsLock.unlockRead(stamp);
+        }
+    }
+
+    private int countOccupied() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
+        for (long word : occupiedSlots)
+            cards += Long.bitCount(word);
         return cards;
     }
 
+    /**
+     * Returns the card in a slot.
+     *
+     * @param slot - the slot.
+     * @return - the card in the slot, or NONE if the slot is empty.
+     */
+    public int cardAt(int slot) {
+        if (boxedSlotToCard != null) readBoxed();
+        return slotToCard[slot]; // a single int read is atomic, and only ever sees a published card or NONE
+    }
+
+    /**
+     * Returns the slot of a card.
+     *
+     * @param card - the card.
+     * @return - the slot the card is in, or NONE if it is not on the table.
+     */
+    public int slotOf(int card) {
+        if (boxedSlotToCard != null) readBoxed();
+        return cardToSlot[card];
+    }
+
+    /**
+     * Copies the cards on the table, as they were at one point in time.
+     *
+     * @param cards - the buffer to copy the card of each slot to (NONE for an empty slot, at least tableSize long).
+     * @return - the number of cards copied.
+     */
+    public int snapshot(int[] cards) {
+        if (boxedSlotToCard != null) readBoxed();
+        long stamp = cardsLock.tryOptimisticRead();
+        System.arraycopy(slotToCard, 0, cards, 0, slotToCard.length);
+        int count = countOccupied();
+        if (cardsLock.validate(stamp)) return count;
+
+        stamp = cardsLock.readLock();
+        try {
+            System.arraycopy(slotToCard, 0, cards, 0, slotToCard.length);
+            return countOccupied();
+        } finally {
+            cardsLock.unlockRead(stamp);
+        }
+    }
+
     /**
      * Places a card on the table in a grid slot.
      * @param card - the card id to place in the slot.
@@ -88,34 +315,208 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            Thread.sleep(env.currentConfig().tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        if (boxedSlotToCard != null) readBoxed();
+        // only the dealer changes the cards, so it reads them without the lock. The slot is cleared, and the card taken
+        // from its old slot, before the card is placed: the removal of their tokens is shown, and the placement
+        // recorded, before any player can place a token on the card
+        int from = cardToSlot[card];
+        boolean replaced = slotToCard[slot] != NONE;
+        if (replaced || from != NONE) {
+            long stamp = cardsLock.writeLock();
+            try {
+                detachCard(slot);
+                if (from != NONE) detachCard(from);
+            } finally {
+                cardsLock.unlockWrite(stamp);
+            }
+        }
+        if (replaced) env.ui.removeTokens(slot);
+        if (from != NONE && from != slot) env.ui.removeTokens(from);
+        if (recorder != null) recorder.placeCard(card, slot);
 
-        // TODO implement
+        long stamp = cardsLock.writeLock();
+        try {
+            attachCard(card, slot);
+        } finally {
+            cardsLock.unlockWrite(stamp);
+        }
+        env.ui.placeCard(card, slot);
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Removes a card from a grid slot on the table (along with the tokens placed on it).
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            Thread.sleep(env.currentConfig().tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        // TODO implement
+        if (boxedSlotToCard != null) readBoxed();
+        boolean removed;
+        long stamp = cardsLock.writeLock();
+        try {
+            removed = detachCard(slot);
+        } finally {
+            cardsLock.unlockWrite(stamp);
+        }
+
+        if (removed) env.ui.removeTokens(slot);
+        if (recorder != null) recorder.removeCard(slot);
+        env.ui.removeCard(slot);
+    }
+
+    /**
+     * Maps a card to an empty slot and indexes the sets it forms.
+     * @param card - the card (which is not on the table).
+     * @param slot - the slot (which is empty).
+     */
+    private void attachCard(int card, int slot) {
+        cardToSlot[card] = slot;
+        slotToCard[slot] = card;
+        occupiedSlots[slot / Long.SIZE] |= 1L << slot;
+        if (boxedSlotToCard != null) {
+            boxedCardToSlot[card] = slot;
+            boxedSlotToCard[slot] = card;
+        }
+        indexSets(slot, slotToCard.length);
+    }
+
+    /**
+     * Clears the mapping of the card in a slot (if any), drops the sets it is part of and removes its tokens (the
+     * caller tells the user interface, after releasing the write lock).
+     * @param slot - the slot.
+     * @return     - true iff there was a card in the slot.
+     */
+    private boolean detachCard(int slot) {
+        int card = slotToCard[slot];
+        if (card == NONE) return false;
+        cardToSlot[card] = NONE;
+        slotToCard[slot] = NONE;
+        occupiedSlots[slot / Long.SIZE] &= ~(1L << slot);
+        if (boxedSlotToCard != null) {
+            boxedCardToSlot[card] = null;
+            boxedSlotToCard[slot] = null;
+        }
+        sets.remove(slot);
+
+        // a token set meanwhile under an optimistic read is either cleared here or undone by placeToken
+        for (int word = slot * tokenWords; word < (slot + 1) * tokenWords; ++word)
+            tokens.set(word, 0);
+        return true;
+    }
+
+    /**
+     * Adds the sets that the card in a slot forms with the cards in lower slots than limit to the set index.
+     * For a set size r >= 3 this walks the (r-2)-combinations of the other cards and looks up the card completing each
+     * one, i.e. O(tableSize) for the standard 3-card sets.
+     *
+     * @param slot  - the slot of the card.
+     * @param limit - the (exclusive) upper bound of the other slots to consider.
+     */
+    private void indexSets(int slot, int limit) {
+        int others = 0;
+        for (int word = 0; word < occupiedSlots.length; ++word)
+            for (long bits = occupiedSlots[word]; bits != 0; bits &= bits - 1) {
+                int other = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                if (other != slot && other < limit) occupied[others++] = other;
+            }
+
+        setSlots[0] = slot;
+        setCards[0] = slotToCard[slot];
+        indexSets(others, limit, 1, 0);
+    }
+
+    /**
+     * Extends a partial set (setSlots[0..size-1]) with the occupied slots from index from on, adding every legal set
+     * to the index.
+     */
+    private void indexSets(int others, int limit, int size, int from) {
+        int setSize = setSlots.length;
+        if (setSize >= 3 && size == setSize - 1) {
+            int completion = env.util.completeSet(setCards, size);
+            if (completion < 0 || completion >= cardToSlot.length) return;
+            int completionSlot = cardToSlot[completion];
+            if (completionSlot != NONE && completionSlot < limit && completionSlot != setSlots[0] && completionSlot > setSlots[size - 1]) {
+                setSlots[size] = completionSlot;
+                sets.add(setSlots);
+            }
+            return;
+        }
+        if (size == setSize) {
+            if (env.util.testSet(setCards)) sets.add(setSlots);
+            return;
+        }
+        for (int i = from; i < others; ++i) {
+            setSlots[size] = occupied[i];
+            setCards[size] = slotToCard[occupied[i]];
+            indexSets(others, limit, size + 1, i + 1);
+        }
     }
 
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff a token was placed (i.e. there is a card in the slot and the player had no token on it).
+     */
+    public boolean placeToken(int player, int slot) {
+        if (boxedSlotToCard != null) readBoxed();
+        int word = slot * tokenWords + player / Long.SIZE;
+        long bit = 1L << player;
+        long stamp = cardsLock.tryOptimisticRead();
+        boolean placed = stamp != 0 && setToken(word, bit, slot);
+        if (!cardsLock.validate(stamp)) { // the dealer changed the cards meanwhile
+            if (placed) clearToken(word, bit);
+            stamp = cardsLock.readLock();
+            try {
+                placed = setToken(word, bit, slot);
+            } finally {
+                cardsLock.unlockRead(stamp);
+            }
+        }
+        if (!placed) return false;
+
+        if (recorder != null) recorder.placeToken(player, slot);
+        env.metrics.tokensPlaced.increment();
+        env.ui.placeToken(player, slot);
+        // the dealer may have cleared the token (replacing the card) before it was shown or recorded, in which case
+        // its removal was shown and recorded before the token itself: remove it again
+        if (!hasToken(player, slot)) {
+            if (recorder != null) recorder.removeToken(player, slot);
+            env.ui.removeToken(player, slot);
+        }
+        return true;
+    }
+
+    /**
+     * Sets a token bit if there is a card in its slot (under cardsLock, read optimistically or locked).
+     * @return - true iff the bit was off and the card was there.
+     */
+    private boolean setToken(int word, long bit, int slot) {
+        if (slotToCard[slot] == NONE) return false;
+        long mask;
+        do {
+            mask = tokens.get(word);
+            if ((mask & bit) != 0) return false;
+        } while (!tokens.compareAndSet(word, mask, mask | bit));
+        return true;
+    }
+
+    /**
+     * Clears a token bit.
+     * @return - true iff it was on.
      */
-    public void placeToken(int player, int slot) {
-        // TODO implement
+    private boolean clearToken(int word, long bit) {
+        long mask;
+        do {
+            mask = tokens.get(word);
+            if ((mask & bit) == 0) return false;
+        } while (!tokens.compareAndSet(word, mask, mask & ~bit));
+        return true;
     }
 
     /**
@@ -125,7 +526,32 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        // TODO implement
-        return false;
+        if (!clearToken(slot * tokenWords + player / Long.SIZE, 1L << player)) return false;
+        if (recorder != null) recorder.removeToken(player, slot);
+        env.ui.removeToken(player, slot);
+        return true;
+    }
+
+    /**
+     * @param player - the player.
+     * @param slot   - the slot.
+     * @return       - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return (tokens.get(slot * tokenWords + player / Long.SIZE) & (1L << player)) != 0;
+    }
+
+    /**
+     * Lists the players that have a token on a slot.
+     * @param slot    - the slot.
+     * @param players - the buffer to write the player ids to (in increasing order, at least config.players long).
+     * @return        - the number of players that have a token on the slot.
+     */
+    public int playersOn(int slot, int[] players) {
+        int count = 0;
+        for (int word = 0; word < tokenWords; ++word)
+            for (long bits = tokens.get(slot * tokenWords + word); bits != 0; bits &= bits - 1)
+                players[count++] = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        return count;
     }
 }
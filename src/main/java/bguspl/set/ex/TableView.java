@@ -0,0 +1,38 @@
+package bguspl.set.ex;
+
+/**
+ * A read-only view of the table for the AI strategy of a computer player: snapshots of the cards on the table and the
+ * player's own tokens. It cannot change the table, so a strategy plays only through its key presses.
+ */
+public final class TableView {
+
+    private final Table table;
+
+    /**
+     * The id of the player that views the table.
+     */
+    private final int player;
+
+    TableView(Table table, int player) {
+        this.table = table;
+        this.player = player;
+    }
+
+    /**
+     * Copies the cards on the table, as they were at one point in time.
+     *
+     * @param cards - the buffer to copy the card of each slot to (-1 for an empty slot, at least tableSize long).
+     * @return - the number of cards copied.
+     */
+    public int snapshot(int[] cards) {
+        return table.snapshot(cards);
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int slot) {
+        return table.hasToken(player, slot);
+    }
+}
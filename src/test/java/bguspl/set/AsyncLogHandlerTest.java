@@ -0,0 +1,119 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    /**
+     * A target handler that keeps the messages it is given, optionally waiting on a latch first.
+     */
+    static class CollectingHandler extends Handler {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch open;
+
+        CollectingHandler(CountDownLatch open) {
+            this.open = open;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            try {
+                open.await();
+            } catch (InterruptedException ignored) {}
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    private static Logger logger(Handler handler) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        return logger;
+    }
+
+    @Test
+    void publish_AllRecordsInOrderPerThread() throws InterruptedException {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        AsyncLogHandler handler = new AsyncLogHandler(target, 1 << 16);
+        Logger logger = logger(handler);
+        StructuredLogger log = new StructuredLogger(logger);
+
+        int threads = 4, records = 5000;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+            int thread = t;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < records; ++i)
+                    log.severe("thread {} record {}", thread, i);
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) producer.join();
+        logger.severe("done");
+        handler.flush();
+
+        assertEquals(threads * records + 1, target.messages.size());
+        assertEquals("done", target.messages.get(threads * records));
+        int[] next = new int[threads];
+        for (String message : target.messages.subList(0, threads * records)) {
+            String[] words = message.split(" ");
+            int thread = Integer.parseInt(words[1]);
+            assertEquals("thread " + thread + " record " + next[thread]++, message);
+        }
+        handler.close();
+    }
+
+    @Test
+    void publish_DropsWhenFull() {
+        CountDownLatch open = new CountDownLatch(1);
+        CollectingHandler target = new CollectingHandler(open);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 4);
+        StructuredLogger log = new StructuredLogger(logger(handler));
+
+        for (int i = 0; i < 100; ++i)
+            log.severe("record {}", i); // never blocks, though the writer is stuck
+        open.countDown();
+        handler.flush();
+
+        assertTrue(target.messages.size() < 100);
+        assertTrue(target.messages.stream().anyMatch(message -> message.endsWith("dropped (log buffer full)")));
+        handler.close();
+    }
+
+    @Test
+    void log_WithoutAsyncHandler() {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        StructuredLogger log = new StructuredLogger(logger(target));
+        log.severe("setting player {} score to {}", 2, 7);
+        log.severe("{} and {}", 1); // missing arguments leave the placeholders
+        assertEquals("setting player 2 score to 7", target.messages.get(0));
+        assertEquals("1 and {}", target.messages.get(1));
+    }
+
+    @Test
+    void log_LevelOff() {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        Logger logger = logger(target);
+        logger.setLevel(Level.OFF);
+        new StructuredLogger(logger).severe("nothing {}", 1);
+        assertTrue(target.messages.isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Image;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardImagesTest {
+
+    private static Config config() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return new Config(logger, new Properties());
+    }
+
+    @Test
+    void get_DecodesOnDemand() {
+        Config config = config();
+        CardImages images = new CardImages(Logger.getAnonymousLogger(), config);
+        Image image = images.get(config.deckSize - 1);
+        assertEquals(258, image.getWidth(null));
+        assertEquals(167, image.getHeight(null));
+        assertSame(image, images.get(config.deckSize - 1));
+    }
+
+    @Test
+    void start_DecodesAllInBackground() throws InterruptedException {
+        Config config = config();
+        CardImages images = new CardImages(Logger.getAnonymousLogger(), config);
+        AtomicIntegerArray decoded = new AtomicIntegerArray(config.deckSize);
+        images.start(decoded::incrementAndGet);
+        Image early = images.get(5); // may race with the workers
+        assertTrue(images.await(30, TimeUnit.SECONDS));
+        assertEquals(0, images.pending());
+        for (int card = 0; card < config.deckSize; ++card)
+            assertEquals(1, decoded.get(card));
+        assertSame(early, images.get(5));
+        for (int card = 0; card < config.deckSize; ++card)
+            assertEquals(258, images.get(card).getWidth(null));
+    }
+
+    @Test
+    void peek_DecodesOnlyWhenNotInBackground() {
+        Config config = config();
+        CardImages images = new CardImages(Logger.getAnonymousLogger(), config);
+        Image image = images.peek(0); // not started: decoded now
+        assertEquals(258, image.getWidth(null));
+        assertSame(image, images.get(0));
+    }
+
+    @Test
+    void peek_RequestsTheCardFromTheWorkers() throws InterruptedException {
+        Config config = config();
+        CardImages images = new CardImages(Logger.getAnonymousLogger(), config);
+        CountDownLatch decoded = new CountDownLatch(1);
+        int last = config.deckSize - 1;
+        images.start(card -> {
+            if (card == last) decoded.countDown();
+        });
+        Image image = images.peek(last); // null until a worker decodes it
+        assertTrue(decoded.await(30, TimeUnit.SECONDS));
+        assertEquals(258, images.peek(last).getWidth(null));
+        assertTrue(image == null || image == images.peek(last));
+    }
+
+    @Test
+    void decode_MissingResource() {
+        assertThrows(RuntimeException.class, () -> CardImages.decode("cards/no_such_card.png"));
+    }
+}
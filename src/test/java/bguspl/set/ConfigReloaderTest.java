@@ -0,0 +1,93 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConfigReloaderTest {
+
+    @TempDir
+    Path directory;
+
+    private Logger logger;
+    private Path file;
+    private Env env;
+    private ConfigReloader reloader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        file = directory.resolve("config.properties");
+        write("TurnTimeoutSeconds=60\nPenaltyFreezeSeconds=3\n");
+        Config config = new Config(logger, file.toString());
+        env = new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config));
+        reloader = new ConfigReloader(logger, file.toString(), env);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        reloader.close();
+    }
+
+    private void write(String properties) throws IOException {
+        Files.write(file, properties.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void reload_PublishesTheNewSnapshot() throws IOException, InterruptedException {
+        reloader.start();
+        write("TurnTimeoutSeconds=30\nPenaltyFreezeSeconds=0.5\n");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (env.currentConfig().turnTimeoutMillis != 30_000 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(30_000, env.currentConfig().turnTimeoutMillis);
+        assertEquals(500, env.currentConfig().penaltyFreezeMillis);
+        assertEquals(60_000, env.config.turnTimeoutMillis);
+    }
+
+    @Test
+    void reload_RejectsStructureChanges() throws IOException {
+        Config before = env.currentConfig();
+        write("TurnTimeoutSeconds=30\nRows=4\n");
+        reloader.reload();
+        assertSame(before, env.currentConfig());
+
+        write("TurnTimeoutSeconds=x\n");
+        reloader.reload();
+        assertSame(before, env.currentConfig());
+    }
+
+    @Test
+    void reload_KeepsTheLoggerAndTheSeed() throws IOException {
+        Level level = logger.getLevel();
+        write("TurnTimeoutSeconds=30\nLogLevel=OFF\n");
+        reloader.reload();
+        assertEquals(30_000, env.currentConfig().turnTimeoutMillis);
+        assertEquals(level, logger.getLevel());
+        assertEquals(env.config.seed, env.currentConfig().seed);
+    }
+
+    @Test
+    void structureChange_NamesTheSetting() {
+        Properties properties = new Properties();
+        Config config = new Config(logger, properties);
+        properties.put("TableDelaySeconds", "1");
+        assertNull(ConfigReloader.structureChange(config, new Config(logger, properties)));
+        properties.put("HumanPlayers", "1");
+        assertEquals("HumanPlayers", ConfigReloader.structureChange(config, new Config(logger, properties)));
+    }
+}
@@ -0,0 +1,112 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class GameServerTest {
+
+    private Config config;
+    private Player player;
+    private GameServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "1");
+        properties.put("ServerPort", "0"); // any free port
+        config = new Config(logger, properties);
+        player = mock(Player.class);
+        server = new GameServer(logger, config, new Player[]{player, null});
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private DataInputStream connect(Socket socket, int player) throws IOException {
+        socket.connect(new InetSocketAddress("localhost", server.port()), 5000);
+        socket.setSoTimeout(5000);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(UserInterfaceNetwork.WELCOME, in.readByte());
+        assertEquals(player, in.readInt());
+        assertEquals(config.rows, in.readInt());
+        assertEquals(config.columns, in.readInt());
+        assertEquals(config.players, in.readInt());
+        return in;
+    }
+
+    /**
+     * Reads a frame of events from a connection and replays it onto a user interface.
+     */
+    private static void readFrame(DataInputStream in, UserInterface ui) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(1 << 12);
+        UserInterfaceDecoder decoder = new UserInterfaceDecoder(ui);
+        do {
+            frame.put(in.readByte());
+            frame.flip();
+            decoder.decode(frame);
+            frame.compact();
+        } while (frame.position() > 0);
+    }
+
+    @Test
+    void eventsAndSnapshot() throws IOException {
+        try (Socket first = new Socket(); Socket second = new Socket()) {
+            DataInputStream in = connect(first, 0);
+            server.ui().placeCard(7, 3);
+            server.ui().placeToken(1, 3);
+            UserInterface display = mock(UserInterface.class);
+            while (mockingDetails(display).getInvocations().size() < 2)
+                readFrame(in, display);
+            InOrder events = inOrder(display);
+            events.verify(display).placeCard(7, 3);
+            events.verify(display).placeToken(1, 3);
+
+            // the only human player is taken, so the second connection watches, starting from a snapshot
+            DataInputStream watcher = connect(second, -1);
+            UserInterface watched = mock(UserInterface.class);
+            readFrame(watcher, watched);
+            InOrder snapshot = inOrder(watched);
+            snapshot.verify(watched).placeCard(7, 3);
+            snapshot.verify(watched).placeToken(1, 3);
+        }
+    }
+
+    @Test
+    void keyPresses() throws IOException {
+        try (Socket socket = new Socket()) {
+            connect(socket, 0);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(5);
+            out.writeInt(config.tableSize); // out of the table, ignored
+            out.writeInt(11);
+            out.flush();
+            verify(player, timeout(5000)).keyPressed(5);
+            verify(player, timeout(5000)).keyPressed(11);
+        }
+    }
+}
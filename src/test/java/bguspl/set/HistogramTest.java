@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    @Test
+    void bucket_ContainsValue() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(value <= Histogram.highestValue(bucket));
+            assertTrue(bucket == 0 || value > Histogram.highestValue(bucket - 1));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highestValue(Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void percentile_WithinRelativeError() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100000; ++value)
+            histogram.record(value);
+
+        assertEquals(100000, histogram.count());
+        assertEquals(100000, histogram.max());
+        assertEquals(50000.5, histogram.mean(), 1e-9);
+        long p50 = histogram.percentile(50), p99 = histogram.percentile(99);
+        assertTrue(p50 >= 50000 && p50 <= 50000 * 17 / 16, "p50 " + p50);
+        assertTrue(p99 >= 99000 && p99 <= 100000, "p99 " + p99);
+        assertEquals(100000, histogram.percentile(100));
+    }
+
+    @Test
+    void record_SumsStripesAndWeights() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; ++i)
+                    histogram.record(10);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        histogram.record(1000, 4000);
+
+        assertEquals(8000, histogram.count());
+        assertEquals(505, histogram.mean(), 1e-9);
+        assertEquals(10, histogram.percentile(50));
+        assertEquals(1000, histogram.percentile(51), 1000 / 16);
+    }
+
+    @Test
+    void percentile_Empty() {
+        assertEquals(0, new Histogram().percentile(99));
+    }
+}
@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.EventQueue;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateBatcherTest {
+
+    @Test
+    void dirtySet_DrainsEachItemOnce() {
+        UpdateBatcher.DirtySet dirty = new UpdateBatcher.DirtySet(130);
+        dirty.mark(3);
+        dirty.mark(3);
+        dirty.mark(64);
+        dirty.mark(129);
+        List<Integer> drained = new ArrayList<>();
+        dirty.drain(drained::add);
+        assertEquals(Arrays.asList(3, 64, 129), drained);
+
+        drained.clear();
+        dirty.drain(drained::add);
+        assertTrue(drained.isEmpty());
+    }
+
+    @Test
+    void request_CoalescesIntoFewFrames() throws InterruptedException, InvocationTargetException {
+        int threads = 4, marks = 10000, items = 100;
+        UpdateBatcher.DirtySet dirty = new UpdateBatcher.DirtySet(items);
+        BitSet applied = new BitSet();
+        AtomicInteger frames = new AtomicInteger();
+        UpdateBatcher batcher = new UpdateBatcher(60, () -> {
+            frames.incrementAndGet();
+            dirty.drain(applied::set);
+        });
+
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t)
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < marks; ++i) {
+                    dirty.mark(i % items);
+                    batcher.request();
+                }
+            }));
+        long start = System.nanoTime();
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) producer.join();
+
+        // wait for the last frame (at most one frame period after the previous one)
+        Thread.sleep(100);
+        EventQueue.invokeAndWait(() -> {});
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(items, applied.cardinality());
+        assertTrue(frames.get() <= 60 * seconds + 2, frames.get() + " frames in " + seconds + " seconds");
+    }
+}
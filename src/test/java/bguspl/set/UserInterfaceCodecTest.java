@@ -0,0 +1,121 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class UserInterfaceCodecTest {
+
+    private static void encodeAll(UserInterface ui) {
+        ui.placeCard(80, 11);
+        ui.removeCard(11);
+        ui.placeToken(199, 3);
+        ui.removeTokens();
+        ui.removeTokens(5);
+        ui.removeToken(2, 7);
+        ui.setCountdown(60_000, false);
+        ui.setCountdown(4_999, true);
+        ui.setElapsed(Long.MAX_VALUE);
+        ui.setFreeze(1, 3_000);
+        ui.setFreeze(1, -1);
+        ui.setScore(0, 300);
+        ui.announceWinner(new int[]{0, 2});
+        ui.dispose();
+    }
+
+    private static void verifyAll(UserInterface ui) {
+        InOrder events = inOrder(ui);
+        events.verify(ui).placeCard(80, 11);
+        events.verify(ui).removeCard(11);
+        events.verify(ui).placeToken(199, 3);
+        events.verify(ui).removeTokens();
+        events.verify(ui).removeTokens(5);
+        events.verify(ui).removeToken(2, 7);
+        events.verify(ui).setCountdown(60_000, false);
+        events.verify(ui).setCountdown(4_999, true);
+        events.verify(ui).setElapsed(Long.MAX_VALUE);
+        events.verify(ui).setFreeze(1, 3_000);
+        events.verify(ui).setFreeze(1, -1);
+        events.verify(ui).setScore(0, 300);
+        events.verify(ui).announceWinner(new int[]{0, 2});
+        events.verify(ui).dispose();
+        events.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void roundTrip_AllEvents() {
+        UserInterfaceEncoder encoder = new UserInterfaceEncoder();
+        encodeAll(encoder);
+        UserInterface ui = mock(UserInterface.class);
+        UserInterfaceDecoder decoder = new UserInterfaceDecoder(ui);
+        decoder.decode(encoder.takeFrame());
+        verifyAll(ui);
+        assertEquals(14, decoder.events());
+        assertTrue(encoder.isEmpty());
+        assertNull(encoder.takeFrame());
+    }
+
+    @Test
+    void decode_PartialFramesAcrossBuffers() {
+        UserInterfaceEncoder encoder = new UserInterfaceEncoder();
+        encodeAll(encoder);
+        byte[] first = encoder.takeFrame();
+        encoder.placeCard(1, 2);
+        byte[] second = encoder.takeFrame();
+        ByteBuffer stream = ByteBuffer.allocate(first.length + second.length).put(first).put(second);
+        stream.flip();
+
+        UserInterface ui = mock(UserInterface.class);
+        UserInterfaceDecoder decoder = new UserInterfaceDecoder(ui);
+        ByteBuffer in = ByteBuffer.allocate(stream.remaining());
+        int frames = 0;
+        while (stream.hasRemaining()) { // one byte at a time
+            in.put(stream.get());
+            in.flip();
+            frames += decoder.decode(in);
+            in.compact();
+        }
+        assertEquals(2, frames);
+        assertEquals(0, in.position());
+        assertEquals(15, decoder.events());
+    }
+
+    @Test
+    void decode_PartialFrameReplaysNothing() {
+        UserInterfaceEncoder encoder = new UserInterfaceEncoder();
+        encoder.placeCard(80, 11);
+        byte[] frame = encoder.takeFrame();
+        UserInterface ui = mock(UserInterface.class);
+        ByteBuffer in = ByteBuffer.wrap(frame, 0, frame.length - 1);
+        assertEquals(0, new UserInterfaceDecoder(ui).decode(in));
+        assertEquals(0, in.position());
+        verifyNoInteractions(ui);
+    }
+
+    @Test
+    void decode_UnknownEventThrows() {
+        UserInterfaceDecoder decoder = new UserInterfaceDecoder(mock(UserInterface.class));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(new byte[]{1, 99}));
+    }
+
+    @Test
+    void reshuffle_TakesFewBytes() {
+        // the events of replacing the 12 cards of a table: 3 bytes per card, 2 per slot, 1 for the tokens
+        UserInterfaceEncoder encoder = new UserInterfaceEncoder();
+        encoder.removeTokens();
+        for (int slot = 0; slot < 12; ++slot)
+            encoder.removeCard(slot);
+        for (int slot = 0; slot < 12; ++slot)
+            encoder.placeCard(80 - slot, slot);
+        assertEquals(1 + 1 + 12 * 2 + 12 * 3, encoder.takeFrame().length);
+    }
+}
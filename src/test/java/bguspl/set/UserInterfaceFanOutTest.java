@@ -0,0 +1,117 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class UserInterfaceFanOutTest {
+
+    private static final int CAPACITY = 16;
+
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+    }
+
+    @Test
+    void subscribers_GetTheEventsInOrder() {
+        UserInterface screen = mock(UserInterface.class);
+        UserInterfaceFanOut fanOut = new UserInterfaceFanOut(logger, CAPACITY, screen);
+        UserInterface first = mock(UserInterface.class);
+        UserInterface second = mock(UserInterface.class);
+        UserInterfaceFanOut.Subscription one = fanOut.subscribe("first", first, UserInterfaceFanOut.Overrun.DROP);
+        UserInterfaceFanOut.Subscription two = fanOut.subscribe("second", second, UserInterfaceFanOut.Overrun.SKIP);
+
+        fanOut.placeCard(7, 3);
+        fanOut.setFreeze(1, -1);
+        fanOut.announceWinner(new int[]{0, 1});
+        fanOut.dispose();
+        one.close();
+        two.close();
+
+        for (UserInterface ui : new UserInterface[]{screen, first, second}) {
+            InOrder events = inOrder(ui);
+            events.verify(ui).placeCard(7, 3);
+            events.verify(ui).setFreeze(1, -1);
+            events.verify(ui).announceWinner(new int[]{0, 1});
+            events.verify(ui).dispose();
+            events.verifyNoMoreInteractions();
+        }
+        assertEquals(4, one.events());
+        assertEquals(4, two.events());
+    }
+
+    @Test
+    void slowSubscribers_DoNotBlockThePublisher() throws InterruptedException {
+        UserInterfaceFanOut fanOut = new UserInterfaceFanOut(logger, CAPACITY, null);
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UserInterface slow = mock(UserInterface.class);
+        doAnswer(invocation -> {
+            stuck.countDown();
+            release.await();
+            return null;
+        }).when(slow).removeCard(0);
+        UserInterface dropped = mock(UserInterface.class);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(dropped).removeCard(0);
+        UserInterfaceFanOut.Subscription skipping = fanOut.subscribe("skipping", slow, UserInterfaceFanOut.Overrun.SKIP);
+        UserInterfaceFanOut.Subscription dropping = fanOut.subscribe("dropping", dropped, UserInterfaceFanOut.Overrun.DROP);
+
+        fanOut.removeCard(0);
+        stuck.await();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < CAPACITY * 4; ++i)
+                fanOut.placeCard(i, 1);
+        });
+        release.countDown();
+        fanOut.dispose();
+        skipping.close();
+        dropping.close();
+
+        assertFalse(skipping.isDropped());
+        assertTrue(skipping.skipped() > 0);
+        verify(slow).dispose();
+        assertTrue(dropping.isDropped());
+    }
+
+    @Test
+    void recorder_WritesFramesThatPlayBack() {
+        UserInterfaceFanOut fanOut = new UserInterfaceFanOut(logger, CAPACITY, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserInterfaceFanOut.Subscription recording = fanOut.subscribe("recorder", new UserInterfaceRecorder(out), UserInterfaceFanOut.Overrun.DROP);
+        fanOut.placeCard(7, 3);
+        fanOut.placeToken(1, 3);
+        fanOut.dispose();
+        recording.close();
+
+        UserInterface ui = mock(UserInterface.class);
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        new UserInterfaceDecoder(ui).decode(in);
+        assertFalse(in.hasRemaining());
+        InOrder events = inOrder(ui);
+        events.verify(ui).placeCard(7, 3);
+        events.verify(ui).placeToken(1, 3);
+        events.verify(ui).dispose();
+    }
+}
@@ -0,0 +1,182 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static Config config(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(new MockLogger(), properties);
+    }
+
+    /**
+     * The straightforward definition of a legal set: every feature is either the same in all cards or different in all.
+     */
+    private static boolean referenceTestSet(int[][] features) {
+        for (int i = 0; i < features[0].length; ++i) {
+            boolean sameSame = true, butDifferent = true;
+            for (int j = 0; j < features.length; ++j)
+                for (int k = j + 1; k < features.length; ++k)
+                    if (features[j][i] == features[k][i]) butDifferent = false;
+                    else sameSame = false;
+            if (sameSame == butDifferent) return false;
+        }
+        return true;
+    }
+
+    @Test
+    void cardToFeatures_DefaultDeck() {
+        Util util = new UtilImpl(config(3, 4));
+        assertEquals("[0, 0, 0, 0]", Arrays.toString(util.cardToFeatures(0)));
+        assertEquals("[2, 2, 2, 2]", Arrays.toString(util.cardToFeatures(80)));
+        assertEquals("[0, 1, 0, 2]", Arrays.toString(util.cardToFeatures(11)));
+        // ids outside the deck are decoded arithmetically, as they always were
+        assertEquals("[0, 0, 0, 1]", Arrays.toString(util.cardToFeatures(82)));
+        assertEquals("[0, 0, 0, -1]", Arrays.toString(util.cardToFeatures(-1)));
+    }
+
+    @Test
+    void testSet_DefaultDeck() {
+        Util util = new UtilImpl(config(3, 4));
+        assertTrue(util.testSet(new int[]{0, 1, 2}));
+        assertTrue(util.testSet(new int[]{0, 40, 80}));
+        assertFalse(util.testSet(new int[]{0, 1, 3}));
+        // ids outside the deck are decoded arithmetically, as in cardToFeatures
+        assertTrue(util.testSet(new int[]{0, 1, 83}));
+        assertFalse(util.testSet(new int[]{0, 1, 84}));
+    }
+
+    @Test
+    void completeSet_DefaultDeck() {
+        Util util = new UtilImpl(config(3, 4));
+        assertEquals(2, util.completeSet(new int[]{0, 1}, 2));
+        assertEquals(80, util.completeSet(new int[]{0, 40}, 2));
+        assertEquals(2, util.completeSet(new int[]{0, 82}, 2));
+        assertEquals(-1, util.completeSet(new int[]{0, -1}, 2));
+        assertEquals(-1, util.completeSet(new int[]{0, 1, 2}, 3)); // not one card short of a set
+    }
+
+    @Test
+    void testSet_MatchesReferenceForAllTriplesAndPairs() {
+        int[][] shapes = {{3, 4}, {3, 2}, {2, 3}, {4, 2}, {5, 2}};
+        for (int[] shape : shapes) {
+            Config config = config(shape[0], shape[1]);
+            Util util = new UtilImpl(config);
+            for (int a = 0; a < config.deckSize; ++a)
+                for (int b = 0; b < config.deckSize; ++b) {
+                    int[] pair = {a, b};
+                    assertEquals(referenceTestSet(util.cardsToFeatures(pair)), util.testSet(pair));
+                    for (int c = 0; c < config.deckSize; c += 7) {
+                        int[] triple = {a, b, c};
+                        assertEquals(referenceTestSet(util.cardsToFeatures(triple)), util.testSet(triple));
+                    }
+                }
+        }
+    }
+
+    @Test
+    void testSet_WideFeaturesWithoutPacking() {
+        // 33 values * 2 features does not fit the packed encoding
+        Config config = config(33, 2);
+        Util util = new UtilImpl(config);
+        int[] set = new int[33];
+        for (int i = 0; i < set.length; ++i) set[i] = i * 33 + i;
+        assertTrue(util.testSet(set));
+        set[32] = 0;
+        assertFalse(util.testSet(set));
+    }
+
+    private static List<Integer> fullDeck(Config config) {
+        return IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    void findSets_FullDefaultDeck() {
+        Config config = config(3, 4);
+        Util util = new UtilImpl(config);
+        List<int[]> sets = util.findSets(fullDeck(config), Integer.MAX_VALUE);
+        assertEquals(1080, sets.size());
+        Set<String> distinct = new HashSet<>();
+        for (int[] set : sets) {
+            assertTrue(util.testSet(set));
+            assertTrue(distinct.add(Arrays.toString(set)));
+        }
+    }
+
+    @Test
+    void findSets_FourValuedFeatures() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        int expected = 0;
+        for (int a = 0; a < config.deckSize; ++a)
+            for (int b = a + 1; b < config.deckSize; ++b)
+                for (int c = b + 1; c < config.deckSize; ++c)
+                    for (int d = c + 1; d < config.deckSize; ++d)
+                        if (util.testSet(new int[]{a, b, c, d})) ++expected;
+        assertEquals(expected, util.findSets(fullDeck(config), Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void findSets_RespectsCountAndPartialDecks() {
+        Config config = config(3, 4);
+        Util util = new UtilImpl(config);
+        assertEquals(1, util.findSets(fullDeck(config), 1).size());
+        assertEquals(0, util.findSets(Arrays.asList(0, 1, 3, 4), 5).size());
+        List<int[]> sets = util.findSets(Arrays.asList(5, 2, 0, 1), 5);
+        assertEquals(1, sets.size());
+        assertEquals("[0, 1, 2]", Arrays.toString(sets.get(0)));
+    }
+
+    @Test
+    void findSets_PrimitiveOverloadsMatchList() {
+        Config config = config(3, 4);
+        Util util = new UtilImpl(config);
+        int[] cards = {80, 0, 40, 7, 13, 26, 3, 5};
+        List<int[]> expected = util.findSets(Arrays.stream(cards).boxed().collect(Collectors.toList()), Integer.MAX_VALUE);
+
+        int[] result = new int[expected.size() * config.featureSize];
+        assertEquals(expected.size(), util.findSets(cards, cards.length, Integer.MAX_VALUE, result));
+        for (int i = 0; i < expected.size(); ++i)
+            assertEquals(Arrays.toString(expected.get(i)), Arrays.toString(Arrays.copyOfRange(result, i * 3, i * 3 + 3)));
+        assertEquals(expected.size(), util.findSets(cards, cards.length, Integer.MAX_VALUE, null));
+        assertEquals(1, util.findSets(cards, 3, Integer.MAX_VALUE, null));
+
+        long[] cardSet = new long[2];
+        for (int card : cards) cardSet[card / 64] |= 1L << card;
+        assertEquals(expected.size(), util.findSets(cardSet, Integer.MAX_VALUE, null));
+    }
+
+    @Test
+    void findSets_CountsEveryCallAndSamplesTheTiming() {
+        Metrics metrics = new Metrics();
+        Util util = new UtilImpl(config(3, 4), metrics);
+        int[] cards = {0, 1, 2, 3};
+        util.findSets(cards, cards.length, 1, null);
+        assertEquals(1, metrics.getFindSetsCalls());
+        for (int i = 1; i < 20; ++i)
+            util.findSets(cards, cards.length, 1, null);
+        assertEquals(20, metrics.getFindSetsCalls());
+        assertEquals(32, metrics.findSets.count()); // 2 timed calls, weighted
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class VirtualThreadsTest {
+
+    private static Thread runOn(boolean virtual) throws InterruptedException {
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        Thread thread = VirtualThreads.newThread(virtual, () -> ranOn.set(Thread.currentThread()), "player-0");
+        thread.start();
+        thread.join();
+        assertSame(thread, ranOn.get());
+        assertEquals("player-0", thread.getName());
+        return thread;
+    }
+
+    @Test
+    void newThread_Platform() throws InterruptedException {
+        assertEquals(Thread.class, runOn(false).getClass());
+    }
+
+    @Test
+    void newThread_VirtualOrFallback() throws InterruptedException {
+        Thread thread = runOn(true);
+        if (!VirtualThreads.supported()) {
+            // falls back to a platform thread on JVMs without virtual threads (e.g. Java 8 to 20)
+            assertEquals(Thread.class, thread.getClass());
+            assertNull(VirtualThreads.unstarted(() -> {}, "player-0"));
+        }
+    }
+}
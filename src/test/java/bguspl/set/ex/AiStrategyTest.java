@@ -0,0 +1,72 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiStrategyTest {
+
+    Env env;
+    Table table;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("AiStrategies", "random, set-aware, human-like");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+    }
+
+    @Test
+    void create_ByConfiguredName() {
+        for (int player = 0; player < env.config.players; ++player) {
+            AiStrategy strategy = AiStrategy.create(env.config.aiStrategy(player), env, new TableView(table, player),
+                    new SplittableRandom(player));
+            assertEquals(env.config.aiStrategy(player), strategy.name());
+        }
+        assertEquals("set-aware", env.config.aiStrategy(4)); // strategies repeat
+        assertEquals("random", AiStrategy.create("no-such-strategy", env, new TableView(table, 0), new SplittableRandom()).name());
+    }
+
+    @Test
+    void setAware_MovesTokensToSet() throws InterruptedException {
+        // cards 0, 1 and 2 differ in one feature only, so they form a set, and card 80 is in no set with them
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(80, 2);
+        table.placeCard(2, 3);
+        table.placeToken(0, 2);
+
+        AiStrategy strategy = new SetAwareStrategy(env, new TableView(table, 0));
+        int[] expected = {2, 0, 1, 3}; // first off the stray token, then onto the set
+        for (int slot : expected) {
+            assertEquals(slot, strategy.nextKeyPress());
+            if (!table.removeToken(0, slot)) table.placeToken(0, slot);
+        }
+        assertEquals(AiStrategy.NONE, strategy.nextKeyPress()); // the set is claimed already
+    }
+
+    @Test
+    void random_PressesTableSlots() throws InterruptedException {
+        AiStrategy strategy = new RandomStrategy(env, new SplittableRandom());
+        for (int i = 0; i < 100; ++i) {
+            int slot = strategy.nextKeyPress();
+            assertTrue(slot >= 0 && slot < env.config.tableSize);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GameReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    String file;
+    Env env;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("game.rec").toString();
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    /**
+     * Records a short game: cards 0, 1, 2 (a set) and 80 are dealt, player 1 claims a non-set and player 0 the set
+     * (which the dealer rewards with a point, unlike the given recorded verdict if it is not POINT).
+     */
+    private void record(int player0Verdict) {
+        try (GameRecorder recorder = new GameRecorder(env, file, 7)) {
+            int[] cards = {0, 1, 2, 80};
+            for (int slot = 0; slot < cards.length; ++slot)
+                recorder.placeCard(cards[slot], slot);
+            for (int slot : new int[]{1, 2, 3})
+                recorder.placeToken(1, slot);
+            recorder.claim(new Claim(1, new int[]{1, 2, 3}, new int[]{1, 2, 80}));
+            recorder.verdict(GameRecorder.PENALTY, 1);
+            for (int slot : new int[]{0, 1, 2})
+                recorder.placeToken(0, slot);
+            recorder.claim(new Claim(0, new int[]{0, 1, 2}, new int[]{0, 1, 2}));
+            recorder.verdict(player0Verdict, 0);
+            recorder.removeToken(0, 1);
+        }
+    }
+
+    @Test
+    void replay_VerdictsMatch() throws IOException {
+        record(GameRecorder.POINT);
+        GameReplayer replayer = new GameReplayer(env.logger, file);
+        replayer.replay();
+
+        assertEquals(7, replayer.seed);
+        assertEquals(15, replayer.events());
+        assertEquals(2, replayer.verdicts());
+        assertEquals(0, replayer.mismatches());
+        assertEquals(1, replayer.score(0));
+    }
+
+    @Test
+    void replay_VerdictMismatch() throws IOException {
+        record(GameRecorder.PENALTY);
+        GameReplayer replayer = new GameReplayer(env.logger, file);
+        replayer.replay();
+
+        assertEquals(1, replayer.mismatches());
+        assertEquals(0, replayer.score(0)); // the recorded verdict is applied regardless
+    }
+
+    @Test
+    void replay_NotARecording() throws IOException {
+        Files.write(directory.resolve("game.rec"), new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> new GameReplayer(env.logger, file));
+    }
+}
@@ -0,0 +1,71 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPressQueueTest {
+
+    @Test
+    void offer_DropsWhenFull() throws InterruptedException {
+        KeyPressQueue queue = new KeyPressQueue(3);
+        assertTrue(queue.offer(4));
+        assertTrue(queue.offer(7));
+        assertTrue(queue.offer(1));
+        assertFalse(queue.offer(2));
+
+        assertEquals(4, queue.take());
+        assertTrue(queue.offer(2));
+        assertEquals(7, queue.take());
+        assertEquals(1, queue.take());
+        assertEquals(2, queue.take());
+    }
+
+    @Test
+    void clear_DiscardsQueuedPresses() throws InterruptedException {
+        KeyPressQueue queue = new KeyPressQueue(2);
+        queue.offer(1);
+        queue.offer(2);
+        queue.clear();
+        assertTrue(queue.offer(3));
+        assertEquals(3, queue.take());
+    }
+
+    @Test
+    void take_ThrowsWhenInterrupted() {
+        KeyPressQueue queue = new KeyPressQueue(1);
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, queue::take);
+    }
+
+    @Test
+    void putAndTake_HandOffInOrderAcrossThreads() throws InterruptedException {
+        final int presses = 200000;
+        KeyPressQueue queue = new KeyPressQueue(3);
+        int[] taken = new int[presses];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < presses; ++i)
+                    taken[i] = queue.take();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < presses; ++i)
+            queue.put(i % 12);
+        consumer.join(30_000);
+
+        assertFalse(consumer.isAlive());
+        assertNull(failure.get());
+        for (int i = 0; i < presses; ++i)
+            assertEquals(i % 12, taken[i], "press " + i);
+    }
+}
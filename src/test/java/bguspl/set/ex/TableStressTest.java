@@ -0,0 +1,117 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs many simulated computer players against one table while a dealer keeps replacing its cards.
+ */
+class TableStressTest {
+
+    private static final int PLAYERS = 130; // more than 64, so the token bitmask of a slot spans several words
+    private static final int PRESSES = 20000;
+
+    Table table;
+    Config config;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(PLAYERS));
+        properties.put("TableDelaySeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        config = new Config(logger, properties);
+        table = new Table(new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config)));
+        for (int slot = 0; slot < config.tableSize; ++slot)
+            table.placeCard(slot, slot);
+    }
+
+    @Test
+    void tokensAndCards_ManyPlayersAndDealer() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < PLAYERS; ++i) {
+            int player = i;
+            threads.add(new Thread(() -> {
+                Random random = new Random(player);
+                try {
+                    start.await();
+                    for (int press = 0; press < PRESSES; ++press) {
+                        int slot = random.nextInt(config.tableSize);
+                        // a press toggles the token, like a player key press
+                        if (!table.removeToken(player, slot)) table.placeToken(player, slot);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "computer-" + player));
+        }
+
+        Thread dealer = new Thread(() -> {
+            Random random = new Random(-1);
+            try {
+                start.await();
+                while (!done.get()) {
+                    int slot = random.nextInt(config.tableSize);
+                    int card = random.nextInt(config.deckSize);
+                    table.removeCard(slot);
+                    if (table.countCards() < config.tableSize && table.slotOf(card) == Table.NONE)
+                        table.placeCard(card, slot);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }, "dealer");
+
+        threads.forEach(Thread::start);
+        dealer.start();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+        done.set(true);
+        dealer.join(TimeUnit.MINUTES.toMillis(1));
+
+        assertNull(failure.get());
+        for (Thread thread : threads) assertFalse(thread.isAlive());
+
+        // tokens only on cards, the maps agree with each other and the set index with a search from scratch
+        List<Integer> cards = new ArrayList<>();
+        int[] players = new int[PLAYERS];
+        for (int slot = 0; slot < config.tableSize; ++slot) {
+            int holders = table.playersOn(slot, players);
+            for (int i = 0; i < holders; ++i)
+                assertTrue(table.hasToken(players[i], slot));
+            int card = table.cardAt(slot);
+            if (card == Table.NONE) {
+                for (int player = 0; player < PLAYERS; ++player)
+                    assertFalse(table.hasToken(player, slot));
+            } else {
+                assertEquals(slot, table.slotOf(card));
+                cards.add(card);
+            }
+        }
+        assertEquals(cards.size(), table.countCards());
+        assertEquals(new UtilImpl(config).findSets(cards, Integer.MAX_VALUE).size(), table.countSets());
+    }
+}
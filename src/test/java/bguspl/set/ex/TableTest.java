@@ -4,14 +4,20 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
@@ -95,6 +101,59 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    private static Config config(int rows, int columns) {
+        Properties properties = new Properties();
+        properties.put("Rows", Integer.toString(rows));
+        properties.put("Columns", Integer.toString(columns));
+        properties.put("TableDelaySeconds", "0");
+        return new Config(new MockLogger(), properties);
+    }
+
+    private static Table tableWithUtil(Config config) {
+        return new Table(new Env(new MockLogger(), config, new MockUserInterface(), new UtilImpl(config)));
+    }
+
+    @Test
+    void sets_IndexedOnPlaceAndRemove() {
+        Table table = tableWithUtil(config(2, 2));
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        assertFalse(table.hasSets());
+
+        table.placeCard(2, 3);
+        assertEquals(1, table.countSets());
+        int[] slots = new int[3];
+        assertEquals(1, table.findSets(slots, 1));
+        assertEquals("[0, 1, 3]", Arrays.toString(slots));
+
+        table.placeCard(5, 2);
+        assertEquals(1, table.countSets());
+
+        table.removeCard(1);
+        assertFalse(table.hasSets());
+    }
+
+    @Test
+    void sets_MatchSearchFromScratch() {
+        Config config = config(3, 4);
+        Table table = tableWithUtil(config);
+        Util util = new UtilImpl(config);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; ++i) {
+            int slot = random.nextInt(table.slotToCard.length);
+            if (random.nextInt(4) == 0) table.removeCard(slot);
+            else {
+                int card = random.nextInt(table.cardToSlot.length);
+                if (table.cardToSlot[card] == Table.NONE) table.placeCard(card, slot);
+            }
+
+            List<Integer> cards = new ArrayList<>();
+            for (int card : table.slotToCard) if (card != Table.NONE) cards.add(card);
+            assertEquals(util.findSets(cards, Integer.MAX_VALUE).size(), table.countSets());
+            assertTrue(table.countSets() == 0 || table.hasSets());
+        }
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}